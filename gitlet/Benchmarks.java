@@ -0,0 +1,423 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Micro-benchmarks for Gitlet's storage and history code.  Run with
+ *  java gitlet.Benchmarks [NAME ...]; with no names, all are run.
+ *  @author Yu Jia Xu
+ */
+public class Benchmarks {
+
+    /** Names of the available benchmarks. */
+    static final List<String> NAMES =
+        Arrays.asList("delta", "codec", "checkout", "commits", "locks",
+                      "diff");
+
+    /** Loose objects written between repacks when building a store. */
+    private static final int BATCH = 10000;
+
+    /** Nanoseconds per microsecond. */
+    private static final double MICROS = 1e3;
+
+    /** Run the benchmarks named in ARGS, or all of them. */
+    public static void main(String... args) {
+        List<String> which = args.length == 0 ? NAMES : Arrays.asList(args);
+        for (String name : which) {
+            switch (name) {
+            case "delta":
+                delta();
+                break;
+            case "codec":
+                codec();
+                break;
+            case "checkout":
+                checkout();
+                break;
+            case "commits":
+                commits();
+                break;
+            case "locks":
+                locks();
+                break;
+            case "diff":
+                diff();
+                break;
+            default:
+                Utils.message("unknown benchmark %s; choose from %s",
+                              name, NAMES);
+            }
+        }
+    }
+
+    /** Store a synthetic history of many one-line edits to a text file in
+     *  full and as deltas, and report disk use and read latency. */
+    static void delta() {
+        final int lines = 4000, revisions = 400;
+        Random random = new Random(0);
+        List<String> text = new ArrayList<>();
+        for (int i = 0; i < lines; i += 1) {
+            text.add("line " + i + " " + Long.toHexString(random.nextLong()));
+        }
+        File fullDir = tempDir(), deltaDir = tempDir();
+        BlobStore full = new BlobStore(fullDir, new File(fullDir, "p"));
+        BlobStore deltas = new BlobStore(deltaDir, new File(deltaDir, "p"));
+        String[] ids = new String[revisions];
+        String prev = null;
+        for (int r = 0; r < revisions; r += 1) {
+            text.set(random.nextInt(lines), "edit " + r);
+            byte[] content =
+                String.join("\n", text).getBytes(StandardCharsets.UTF_8);
+            ids[r] = Utils.sha1("f.txt", content);
+            full.write(ids[r], content, null);
+            deltas.write(ids[r], content, prev);
+            prev = ids[r];
+        }
+        long fullBytes = folderSize(fullDir);
+        long deltaBytes = folderSize(deltaDir);
+        Utils.message("delta: %d revisions of a %d-line file", revisions,
+                      lines);
+        Utils.message("  full blobs:  %,d bytes", fullBytes);
+        Utils.message("  delta blobs: %,d bytes (%.1f%% of full)",
+                      deltaBytes, 100.0 * deltaBytes / fullBytes);
+        Utils.message("  full read:   %.1f us/blob",
+                      readLatency(new BlobStore(fullDir,
+                                                new File(fullDir, "p")),
+                                  ids));
+        Utils.message("  delta read:  %.1f us/blob (cold cache)",
+                      readLatency(new BlobStore(deltaDir,
+                                                new File(deltaDir, "p")),
+                                  ids));
+        Utils.message("  delta read:  %.1f us/blob (warm cache)",
+                      readLatency(deltas, ids));
+        deleteTree(fullDir);
+        deleteTree(deltaDir);
+    }
+
+    /** Store the same text-heavy blobs with each codec and report disk
+     *  use and read latency. */
+    static void codec() {
+        final int blobs = 300, lines = 2000;
+        Random random = new Random(1);
+        byte[][] contents = new byte[blobs][];
+        String[] ids = new String[blobs];
+        for (int b = 0; b < blobs; b += 1) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < lines; i += 1) {
+                text.append("    value").append(random.nextInt(lines))
+                    .append(" = compute(value").append(i).append(");\n");
+            }
+            contents[b] = text.toString().getBytes(StandardCharsets.UTF_8);
+            ids[b] = Utils.sha1("f" + b, contents[b]);
+        }
+        Utils.message("codec: %d blobs of %d lines", blobs, lines);
+        for (Codec codec : new Codec[] {Codec.NONE, Codec.DEFLATE}) {
+            File dir = tempDir();
+            BlobStore store = new BlobStore(dir, new File(dir, "p"));
+            store.setCodec(codec);
+            long start = System.nanoTime();
+            for (int b = 0; b < blobs; b += 1) {
+                store.write(ids[b], contents[b], null);
+            }
+            double write = (System.nanoTime() - start) / MICROS / blobs;
+            double read = readLatency(new BlobStore(dir, new File(dir, "p")),
+                                      ids);
+            Utils.message("  %-8s %,12d bytes  write %.1f us  read %.1f us",
+                          codec, folderSize(dir), write, read);
+            deleteTree(dir);
+        }
+    }
+
+    /** Write working trees of each size listed in the gitlet.bench.files
+     *  property (by default 10k, 100k and 1M small files) serially and on
+     *  Repository.THREADS threads, and report files written per second. */
+    static void checkout() {
+        String sizes = System.getProperty("gitlet.bench.files",
+                                          "10000,100000,1000000");
+        Utils.message("checkout: serial vs %d threads", Repository.THREADS);
+        for (String size : sizes.split(",")) {
+            int n = Integer.parseInt(size.trim());
+            File dir = tempDir();
+            BlobStore store = new BlobStore(new File(dir, "blobs"),
+                                            new File(dir, "pack/blobs"));
+            store.setCodec(Codec.NONE);
+            new File(dir, "blobs").mkdirs();
+            TreeMap<String, String> files = new TreeMap<>();
+            for (int i = 0; i < n; i += 1) {
+                byte[] content = ("file " + i + "\n").repeat(1 + i % 64)
+                    .getBytes(StandardCharsets.UTF_8);
+                String id = Utils.sha1(content);
+                store.write(id, content, null);
+                files.put("f" + i, id);
+                if (i % BATCH == BATCH - 1) {
+                    store.repack();
+                }
+            }
+            store.repack();
+            for (int threads : new int[] {1, Repository.THREADS}) {
+                File tree = new File(dir, "tree" + threads);
+                tree.mkdirs();
+                long start = System.nanoTime();
+                List<String> failed =
+                    Repository.writefiles(store, tree, files, threads, null);
+                double secs = (System.nanoTime() - start) / 1e9;
+                Utils.message("  %,9d files  %2d thread(s)  %.2f s  "
+                              + "%,.0f files/s%s", n, threads, secs,
+                              n / secs, failed.isEmpty() ? "" : "  FAILED");
+                deleteTree(tree);
+            }
+            deleteTree(dir);
+        }
+    }
+
+    /** Store commits tracking a range of file counts in the binary format,
+     *  with their trees, and with Java serialization, and report the bytes
+     *  each takes, trees included, and how fast each is read back with
+     *  all its files. */
+    static void commits() {
+        final int rounds = 20000;
+        Utils.message("commits: binary with trees vs Java serialization");
+        for (int n : new int[] {1, 100, 10000}) {
+            File dir = tempDir();
+            ObjectStore commits = new ObjectStore(new File(dir, "c"),
+                                                  new File(dir, "cp"));
+            ObjectStore trees = new ObjectStore(new File(dir, "t"),
+                                                new File(dir, "tp"));
+            new File(dir, "c").mkdir();
+            new File(dir, "t").mkdir();
+            commits.setCodec(Codec.NONE);
+            trees.setCodec(Codec.NONE);
+            Commit c = new Commit(new Date(), "commit of " + n + " files",
+                                  null);
+            c.setP(Utils.sha1("parent"));
+            for (int i = 0; i < n; i += 1) {
+                c.addfiles("src/main/file" + i + ".java",
+                           Utils.sha1("blob" + i));
+            }
+            c.saveCommit(commits, trees);
+            long binary = commits.storedLength(c.sha1());
+            for (String id : trees.list()) {
+                binary += trees.storedLength(id);
+            }
+            String java = Utils.sha1("java", c.sha1());
+            commits.write(java, Utils.serialize(c));
+            int times = Math.max(1, rounds * 10 / (n + 10));
+            Utils.message("  %,6d files  binary %,9d bytes  %8.1f us   "
+                          + "java %,9d bytes  %8.1f us", n, binary,
+                          commitLatency(commits, c.sha1(), trees,
+                                        c.tree().id(), times),
+                          commits.storedLength(java),
+                          commitLatency(commits, java, null, null, times));
+            deleteTree(dir);
+        }
+    }
+
+    /** Start many Gitlet processes on one repository at once, most making
+     *  a branch and the rest reading it, and report how long they took,
+     *  how often they waited for the lock and gave up on it, and whether
+     *  any branch that was made was lost.  The number of processes is
+     *  the gitlet.bench.processes property, 200 by default. */
+    static void locks() {
+        final int processes = Integer.parseInt(System.getProperty(
+            "gitlet.bench.processes", "200"));
+        File root = tempDir();
+        new Repository(root, System.out, System.err).run("init");
+        String java = Paths.get(System.getProperty("java.home"), "bin",
+                                "java").toString();
+        String[][] readers = {{"status"}, {"log"},
+                              {"find", "initial commit"}, {"global-log"}};
+        Pattern report = Pattern.compile(
+            "lock: \\d+ taken, (\\d+) after waiting ([0-9.]+) ms "
+            + "\\(longest ([0-9.]+) ms\\), (\\d+) timed out");
+        List<Process> running = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            for (int p = 0; p < processes; p += 1) {
+                List<String> line = new ArrayList<>(Arrays.asList(
+                    java, "-cp", System.getProperty("java.class.path"),
+                    "-Dgitlet.verbose=1", "gitlet.Main"));
+                line.addAll(Arrays.asList(p % 4 == 0 ? readers[p / 4 % 4]
+                                          : new String[] {"branch",
+                                                          "b" + p}));
+                running.add(new ProcessBuilder(line).directory(root)
+                            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                            .start());
+            }
+            long contended = 0, timeouts = 0, failed = 0;
+            double waited = 0, longest = 0;
+            List<String> made = new ArrayList<>();
+            for (int p = 0; p < processes; p += 1) {
+                Process proc = running.get(p);
+                Matcher m = report.matcher(new String(
+                    proc.getErrorStream().readAllBytes(),
+                    StandardCharsets.UTF_8));
+                proc.waitFor();
+                if (!m.find()) {
+                    failed += 1;
+                    continue;
+                }
+                contended += Long.parseLong(m.group(1));
+                waited += Double.parseDouble(m.group(2));
+                longest = Math.max(longest, Double.parseDouble(m.group(3)));
+                timeouts += Long.parseLong(m.group(4));
+                if (p % 4 != 0 && m.group(4).equals("0")) {
+                    made.add("b" + p);
+                }
+            }
+            double secs = (System.nanoTime() - start) / 1e9;
+            ByteArrayOutputStream printed = new ByteArrayOutputStream();
+            new Repository(root, new PrintStream(printed, true), System.err)
+                .run("status");
+            made.removeAll(Arrays.asList(
+                printed.toString().split("\n\n")[0].split("\n")));
+            Utils.message("locks: %d processes on one repository, 1 in 4 "
+                          + "reading", processes);
+            Utils.message("  %.2f s  %d waited for the lock, %.1f ms in "
+                          + "all (longest %.1f ms)", secs, contended,
+                          waited, longest);
+            Utils.message("  %d timed out, %d failed, %d branches lost",
+                          timeouts, failed, made.size());
+        } catch (IOException | InterruptedException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            deleteTree(root);
+        }
+    }
+
+    /** Diff a file of a million lines against copies of it with a range
+     *  of numbers of lines changed at random, and report how long
+     *  hashing, diffing, checking the lines kept and printing took, how
+     *  many edits were found and how many distinct lines were held.
+     *  The number of lines is the gitlet.bench.lines property. */
+    static void diff() {
+        final int lines = Integer.parseInt(System.getProperty(
+            "gitlet.bench.lines", "1000000"));
+        Random random = new Random(2);
+        String[] text = new String[lines];
+        for (int i = 0; i < lines; i += 1) {
+            text[i] = "line " + i + " " + Long.toHexString(random.nextLong());
+        }
+        byte[] before = join(text);
+        Utils.message("diff: %,d lines, %,d bytes", lines, before.length);
+        for (int changes : new int[] {0, 10, 100, 1000, 10000}) {
+            String[] copy = text.clone();
+            for (int c = 0; c < changes; c += 1) {
+                copy[random.nextInt(lines)] = "changed " + c;
+            }
+            byte[] after = join(copy);
+            long start = System.nanoTime();
+            Diff.Table table = new Diff.Table();
+            Diff.Lines a = Diff.read(new ByteArrayInputStream(before), table);
+            Diff.Lines b = Diff.read(new ByteArrayInputStream(after), table);
+            long read = System.nanoTime();
+            List<int[]> edits = Diff.edits(a, b);
+            long diffed = System.nanoTime();
+            if (!Diff.verify(edits, () -> new ByteArrayInputStream(before),
+                             () -> new ByteArrayInputStream(after))) {
+                throw new IllegalStateException("hash collision");
+            }
+            long verified = System.nanoTime();
+            Diff.printHunks(edits, a.size(),
+                            () -> new ByteArrayInputStream(before),
+                            () -> new ByteArrayInputStream(after),
+                            new PrintStream(OutputStream.nullOutputStream()));
+            long printed = System.nanoTime();
+            Utils.message("  %,6d changed  %,6d edits  %,9d lines held  "
+                          + "read %6.1f ms  diff %8.1f ms  verify %6.1f ms  "
+                          + "print %7.1f ms", changes, edits.size(),
+                          table.size(), (read - start) / 1e6,
+                          (diffed - read) / 1e6, (verified - diffed) / 1e6,
+                          (printed - verified) / 1e6);
+        }
+    }
+
+    /** Return LINES, each ended by a newline, as bytes. */
+    private static byte[] join(String[] lines) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String line : lines) {
+            out.writeBytes(line.getBytes(StandardCharsets.UTF_8));
+            out.write('\n');
+        }
+        return out.toByteArray();
+    }
+
+    /** Return the mean time in microseconds to read commit ID from
+     *  COMMITS and list all its files, reading them from tree TREE in
+     *  TREES unless TREE is null, TIMES times after as many untimed
+     *  warm-up rounds. */
+    private static double commitLatency(ObjectStore commits, String id,
+                                        ObjectStore trees, String tree,
+                                        int times) {
+        long start = 0;
+        for (int i = 0; i < 2 * times; i += 1) {
+            if (i == times) {
+                start = System.nanoTime();
+            }
+            Commit c = Commit.decode(commits.read(id));
+            if (tree == null) {
+                c.getFiles();
+            } else {
+                Tree.read(trees, tree).flatten("", new HashMap<>());
+            }
+        }
+        return (System.nanoTime() - start) / MICROS / times;
+    }
+
+    /** Return the mean time in microseconds to read each of IDS from
+     *  STORE, newest first. */
+    private static double readLatency(BlobStore store, String[] ids) {
+        long start = System.nanoTime();
+        for (int i = ids.length - 1; i >= 0; i -= 1) {
+            store.read(ids[i]);
+        }
+        return (System.nanoTime() - start) / MICROS / ids.length;
+    }
+
+    /** Return a new temporary directory. */
+    static File tempDir() {
+        try {
+            return Files.createTempDirectory("gitlet-bench").toFile();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Delete DIR and everything under it. */
+    static void deleteTree(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                deleteTree(f);
+            }
+        }
+        dir.delete();
+    }
+
+    /** Return the total size of the plain files under DIR. */
+    static long folderSize(File dir) {
+        long total = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                total += f.isDirectory() ? folderSize(f) : f.length();
+            }
+        }
+        return total;
+    }
+}
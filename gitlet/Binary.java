@@ -0,0 +1,206 @@
+package gitlet;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Readers and writers for the pieces of Gitlet's binary records.
+ *  Lengths and counts are unsigned varints (seven bits a byte, low bits
+ *  first), strings are a length and UTF-8 bytes, and ids are a tag byte
+ *  followed, for a full SHA-1, by its twenty raw bytes.  A record that
+ *  starts with the Java serialization magic is from before these
+ *  formats and is read with ObjectInputStream.
+ *  @author Yu Jia Xu
+ */
+class Binary {
+
+    /** Leading bytes of a Java-serialized object. */
+    private static final int JAVA_MAGIC = 0xACED;
+
+    /** Tag of a missing id or string. */
+    private static final int NULL = 0;
+    /** Tag of the literal "null", which marks the initial commit. */
+    private static final int NULL_ID = 1;
+    /** Tag of a full SHA-1 stored as raw bytes. */
+    private static final int SHA1 = 2;
+    /** Tag of any other id, stored as a string. */
+    private static final int TEXT = 3;
+
+    /** Return true iff DATA is a Java-serialized object. */
+    static boolean isSerialized(byte[] data) {
+        return data.length >= 2
+            && ((data[0] & 0xff) << 8 | (data[1] & 0xff)) == JAVA_MAGIC;
+    }
+
+    /** Write the non-negative V to OUT as a varint. */
+    static void writeVarint(DataOutputStream out, long v)
+        throws IOException {
+        while ((v & ~0x7fL) != 0) {
+            out.writeByte((int) (v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    /** Return the varint read from IN. */
+    static long readVarint(ByteBuffer in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = in.get() & 0xff;
+            v |= (long) (b & 0x7f) << shift;
+            if (b < 0x80) {
+                return v;
+            }
+        }
+        throw new IOException("varint too long");
+    }
+
+    /** Write the signed V to OUT as a zigzag varint, so that values near
+     *  zero on either side stay short. */
+    static void writeSigned(DataOutputStream out, long v)
+        throws IOException {
+        writeVarint(out, (v << 1) ^ (v >> (Long.SIZE - 1)));
+    }
+
+    /** Return the zigzag varint read from IN. */
+    static long readSigned(ByteBuffer in) throws IOException {
+        long v = readVarint(in);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /** Write S, which may be null, to OUT. */
+    static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        if (s == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    /** Return the string, possibly null, read from IN. */
+    static String readString(ByteBuffer in) throws IOException {
+        int n = length(in);
+        if (n == 0) {
+            return null;
+        }
+        if (n - 1 > in.remaining()) {
+            throw new IOException("truncated string");
+        }
+        if (!in.hasArray()) {
+            byte[] bytes = new byte[n - 1];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        String s = new String(in.array(), in.arrayOffset() + in.position(),
+                              n - 1, StandardCharsets.UTF_8);
+        in.position(in.position() + n - 1);
+        return s;
+    }
+
+    /** Write ID, which may be null or "null", to OUT. */
+    static void writeId(DataOutputStream out, String id) throws IOException {
+        if (id == null) {
+            out.writeByte(NULL);
+        } else if (id.equals("null")) {
+            out.writeByte(NULL_ID);
+        } else if (isSha1(id)) {
+            out.writeByte(SHA1);
+            out.write(Utils.hexToBytes(id));
+        } else {
+            out.writeByte(TEXT);
+            writeString(out, id);
+        }
+    }
+
+    /** Return the id read from IN. */
+    static String readId(ByteBuffer in) throws IOException {
+        int tag = in.get() & 0xff;
+        switch (tag) {
+        case NULL:
+            return null;
+        case NULL_ID:
+            return "null";
+        case SHA1:
+            byte[] raw = new byte[Utils.UID_BYTES];
+            in.get(raw);
+            return Utils.bytesToHex(raw);
+        case TEXT:
+            return readString(in);
+        default:
+            throw new IOException("bad id tag " + tag);
+        }
+    }
+
+    /** Write TABLE, a map from names to ids, to OUT in name order.  Each
+     *  name is stored as the length of the prefix it shares with the one
+     *  before it and the rest, so paths in one folder cost little more
+     *  than their last component. */
+    static void writeTable(DataOutputStream out, Map<String, String> table)
+        throws IOException {
+        TreeMap<String, String> sorted = new TreeMap<>(table);
+        writeVarint(out, sorted.size());
+        String prev = "";
+        for (Map.Entry<String, String> e : sorted.entrySet()) {
+            String name = e.getKey();
+            int shared = 0, limit = Math.min(prev.length(), name.length());
+            while (shared < limit
+                   && prev.charAt(shared) == name.charAt(shared)) {
+                shared += 1;
+            }
+            if (shared > 0 && Character.isHighSurrogate(
+                    name.charAt(shared - 1))) {
+                shared -= 1;
+            }
+            writeVarint(out, shared);
+            writeString(out, name.substring(shared));
+            writeId(out, e.getValue());
+            prev = name;
+        }
+    }
+
+    /** Read a table written by writeTable from IN into TABLE. */
+    static void readTable(ByteBuffer in, Map<String, String> table)
+        throws IOException {
+        String prev = "";
+        for (int n = length(in); n > 0; n -= 1) {
+            int shared = length(in);
+            String rest = readString(in);
+            if (shared > prev.length() || rest == null) {
+                throw new IOException("bad table entry");
+            }
+            String name = prev.substring(0, shared) + rest;
+            table.put(name, readId(in));
+            prev = name;
+        }
+    }
+
+    /** Return the varint read from IN as a length. */
+    static int length(ByteBuffer in) throws IOException {
+        long n = readVarint(in);
+        if (n > Integer.MAX_VALUE) {
+            throw new IOException("bad length " + n);
+        }
+        return (int) n;
+    }
+
+    /** Return true iff ID is a full SHA-1 in lower-case hex, and so
+     *  survives being stored as raw bytes. */
+    static boolean isSha1(String id) {
+        if (id.length() != Utils.UID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i += 1) {
+            char c = id.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,223 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** The blob store.  A new revision of a file may be stored as a Delta
+ *  against an earlier revision (normally the same file in the parent
+ *  commit) instead of in full.  Stored deltas are written FLAGGED in
+ *  their object header and begin with their chain depth and the id of
+ *  their base; anything else is a full blob, whatever its contents, so
+ *  blobs written before deltas existed read unchanged.  Chains
+ *  are never longer than MAX_DEPTH, and recently rebuilt contents are
+ *  kept in a small cache so that walking a chain rarely starts from its
+ *  root.
+ *  @author Yu Jia Xu
+ */
+class BlobStore extends ObjectStore {
+
+    /** Longest allowed chain of deltas. */
+    static final int MAX_DEPTH = 16;
+    /** Largest blob that is considered for delta storage. */
+    static final int MAX_DELTA_INPUT = 16 << 20;
+    /** Total size of the contents kept in the cache. */
+    static final long CACHE_BYTES = 32L << 20;
+
+    /** Length of a stored delta's header. */
+    private static final int HEADER = 1 + Utils.UID_LENGTH;
+
+    /** Recently rebuilt contents by id, least recently used first. */
+    private final LinkedHashMap<String, byte[]> cache =
+        new LinkedHashMap<>(16, 0.75f, true);
+    /** Total length of the contents in the cache. */
+    private long cached;
+
+    /** A blob store keeping loose blobs in LOOSE and its pack in the files
+     *  PACK.pack and PACK.idx. */
+    BlobStore(File loose, File pack) {
+        super(loose, pack);
+    }
+
+    /** Return the contents of blob ID, rebuilding it from its delta chain
+     *  if need be. */
+    @Override
+    byte[] read(String id) {
+        byte[] data = cached(id);
+        if (data != null) {
+            return data;
+        }
+        List<byte[]> chain = new ArrayList<>();
+        String at = id;
+        while (true) {
+            data = cached(at);
+            if (data != null) {
+                break;
+            }
+            byte[] stored;
+            boolean delta;
+            try (Stored in = openStored(at)) {
+                stored = in.readAllBytes();
+                delta = in.flagged();
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            if (!delta) {
+                data = stored;
+                remember(at, data);
+                break;
+            }
+            chain.add(stored);
+            at = baseOf(stored);
+        }
+        for (int i = chain.size() - 1; i >= 0; i -= 1) {
+            byte[] stored = chain.get(i);
+            data = Delta.apply(data, Arrays.copyOfRange(stored, HEADER,
+                                                        stored.length));
+        }
+        remember(id, data);
+        return data;
+    }
+
+    /** Return a stream of the contents of blob ID.  Full blobs are
+     *  streamed straight from storage; deltas are rebuilt in memory. */
+    @Override
+    InputStream open(String id) {
+        byte[] data = cached(id);
+        if (data != null) {
+            return new ByteArrayInputStream(data);
+        }
+        Stored in = openStored(id);
+        if (in.flagged()) {
+            try {
+                in.close();
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            return new ByteArrayInputStream(read(id));
+        }
+        return in;
+    }
+
+    /** Store CONTENT as blob ID unless it is already present.  If BASE is
+     *  not null, the blob is stored as a delta against blob BASE when that
+     *  is much smaller and the chain would not grow too long.  Neither
+     *  CONTENT nor BASE may be longer than MAX_DELTA_INPUT uncompressed. */
+    void write(String id, byte[] content, String base) {
+        if (contains(id)) {
+            return;
+        }
+        if (base != null && !base.equals(id)
+            && content.length <= MAX_DELTA_INPUT && contains(base)) {
+            int depth = depth(base);
+            byte[] old = depth < MAX_DEPTH ? readAtMost(base, depth) : null;
+            if (old != null) {
+                byte[] delta = Delta.encode(old, content);
+                if (HEADER + delta.length < content.length / 2) {
+                    writeFlagged(id, FLAGGED,
+                                 new byte[] {(byte) (depth + 1)}, base,
+                                 delta);
+                    remember(id, content);
+                    return;
+                }
+            }
+        }
+        write(id, content);
+    }
+
+    /** Store the contents of the file SOURCE under the id
+     *  sha1(PREFIX, contents), as a delta against blob BASE if that is
+     *  not null and the file is small enough, and return that id.  Larger
+     *  files are streamed into storage without being held in memory. */
+    String writeFile(String prefix, File source, String base) {
+        if (base == null || source.length() > MAX_DELTA_INPUT) {
+            return writeFile(prefix, source);
+        }
+        byte[] content = Utils.readContents(source);
+        String id = Utils.sha1(prefix, content);
+        write(id, content, base);
+        return id;
+    }
+
+    /** Copy blob ID to DEST from the cache if it is there; otherwise
+     *  full blobs are transferred straight from storage, and deltas,
+     *  which the store never transfers, are rebuilt by copyTo. */
+    @Override
+    boolean transferPlain(String id, FileChannel out) throws IOException {
+        byte[] data = cached(id);
+        if (data != null) {
+            out.write(ByteBuffer.wrap(data));
+            return true;
+        }
+        return super.transferPlain(id, out);
+    }
+
+    /** Return the length of the delta chain under blob ID, which is 0 if
+     *  it is stored in full. */
+    int depth(String id) {
+        try (Stored in = openStored(id)) {
+            return in.flagged() ? in.read() : 0;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the contents of blob ID, whose delta chain is DEPTH long,
+     *  or null if they are longer than MAX_DELTA_INPUT.  Only as much of
+     *  a full blob as that limit is read; a delta's contents were no
+     *  longer than the limit when it was written. */
+    private byte[] readAtMost(String id, int depth) {
+        byte[] data = cached(id);
+        if (data == null && depth > 0) {
+            data = read(id);
+        } else if (data == null) {
+            try (InputStream in = openStored(id)) {
+                data = in.readNBytes(MAX_DELTA_INPUT + 1);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            if (data.length > MAX_DELTA_INPUT) {
+                return null;
+            }
+            remember(id, data);
+        }
+        return data.length > MAX_DELTA_INPUT ? null : data;
+    }
+
+    /** Return the base id recorded in the stored delta STORED. */
+    private static String baseOf(byte[] stored) {
+        return new String(stored, 1, Utils.UID_LENGTH,
+                          StandardCharsets.ISO_8859_1);
+    }
+
+    /** Return the cached contents of ID, or null. */
+    private synchronized byte[] cached(String id) {
+        return cache.get(id);
+    }
+
+    /** Cache DATA as the contents of ID, evicting the least recently used
+     *  entries to stay within CACHE_BYTES. */
+    private synchronized void remember(String id, byte[] data) {
+        if (data.length > CACHE_BYTES / 4 || cache.containsKey(id)) {
+            return;
+        }
+        cache.put(id, data);
+        cached += data.length;
+        Iterator<Map.Entry<String, byte[]>> it =
+            cache.entrySet().iterator();
+        while (cached > CACHE_BYTES && it.hasNext()) {
+            cached -= it.next().getValue().length;
+            it.remove();
+        }
+    }
+}
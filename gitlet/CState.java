@@ -1,26 +1,30 @@
 package gitlet;
 
-import java.io.File;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 
 
-/** this state is for tracking the newest commit file for Gitlet.
+/** this state is for tracking the newest commit file for Gitlet.  It is
+ *  saved as MAGIC and VERSION, the head commit, the current branch and
+ *  the tables of branches and removed files, written with Binary; states
+ *  saved before that format are Java serialized and still read.  Where
+ *  it is saved is up to StateJournal.
  *  @author Yu Jia Xu
  */
 public class CState implements Serializable {
 
-    /**
-     * working directory.
-     */
-    static final File CWD = new File(".");
-    /** Main metadata folder. */
-    private static File mainfolder  = Utils.join(CWD, ".gitlet");
+    /** Fixed so that saved states stay readable as this class changes. */
+    private static final long serialVersionUID = 314359637453903381L;
 
-    /**
-     * state folder.
-     */
-    private static File statefolder = Utils.join(mainfolder, "state_folder");
+    /** Leading bytes of a saved state. */
+    private static final int MAGIC = 0x47535454;
+    /** Format version of saved states. */
+    private static final int VERSION = 1;
 
     /**
      * sha1 code of current commit.
@@ -108,18 +112,46 @@ public class CState implements Serializable {
 
     /**
      *
-     * @return this state class
+     * @return this state in the saved format
      */
-    public static CState fromFile() {
-        File commitFile = Utils.join(statefolder, "state");
-        return Utils.readObject(commitFile, CState.class);
+    byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            Binary.writeId(out, commitsha1);
+            Binary.writeString(out, currentbranch);
+            Binary.writeTable(out, branches);
+            Binary.writeTable(out, rmfiles);
+        } catch (IOException excp) {
+            throw Utils.error("Internal error serializing state.");
+        }
+        return bytes.toByteArray();
     }
 
     /**
-     * save this state.
-     */
-    public void saveState() {
-        Utils.writeObject(Utils.join(statefolder, "state"), this);
+     *
+     * @param data a state in the saved format, or Java serialized
+     * @return the state
+     */
+    static CState decode(byte[] data) {
+        if (Binary.isSerialized(data)) {
+            return Utils.deserialize(data, CState.class);
+        }
+        ByteBuffer in = ByteBuffer.wrap(data);
+        try {
+            if (in.getInt() != MAGIC || in.get() != VERSION) {
+                throw new IllegalArgumentException("bad state");
+            }
+            CState result = new CState();
+            result.commitsha1 = Binary.readId(in);
+            result.currentbranch = Binary.readString(in);
+            Binary.readTable(in, result.branches);
+            Binary.readTable(in, result.rmfiles);
+            return result;
+        } catch (IOException | BufferUnderflowException excp) {
+            throw new IllegalArgumentException("bad state: " + excp);
+        }
     }
 
     /**
@@ -0,0 +1,24 @@
+package gitlet;
+
+import java.io.File;
+
+/** Thin client for the Gitlet daemon.  Usage: java gitlet.Client ARGS,
+ *  with the same ARGS as gitlet.Main.  The command is forwarded to the
+ *  daemon serving the current directory, if there is one, and otherwise
+ *  run in this process.
+ *  @author Yu Jia Xu
+ */
+public class Client {
+
+    /** Run the command ARGS on the daemon, or here if none is running. */
+    public static void main(String... args) {
+        File socket = Daemon.socket(new File("."));
+        if (socket.exists()) {
+            int status = Daemon.run(socket, args, System.out, System.err);
+            if (status >= 0) {
+                System.exit(status);
+            }
+        }
+        Main.main(args);
+    }
+}
@@ -0,0 +1,118 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/** A stream encoding for stored objects.  Each codec has a one-byte id
+ *  that ObjectStore records in the header of every object it writes, so
+ *  objects written with any codec (or before codecs existed) stay
+ *  readable whichever codec is currently selected.
+ *  @author Yu Jia Xu
+ */
+abstract class Codec {
+
+    /** Size of the buffers used by the compressing streams. */
+    static final int BUFFER = 1 << 16;
+
+    /** Stores bytes as they are. */
+    static final Codec NONE = new Codec(0, "none") {
+        @Override
+        OutputStream encode(OutputStream out) {
+            return out;
+        }
+
+        @Override
+        InputStream decode(InputStream in) {
+            return in;
+        }
+    };
+
+    /** Compresses with zlib deflate. */
+    static final Codec DEFLATE = new Codec(1, "deflate") {
+        @Override
+        OutputStream encode(OutputStream out) {
+            final Deflater deflater = new Deflater();
+            return new DeflaterOutputStream(out, deflater, BUFFER) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        deflater.end();
+                    }
+                }
+            };
+        }
+
+        @Override
+        InputStream decode(InputStream in) {
+            final Inflater inflater = new Inflater();
+            return new InflaterInputStream(in, inflater, BUFFER) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inflater.end();
+                    }
+                }
+            };
+        }
+    };
+
+    /** All codecs, indexed by id. */
+    private static final Codec[] ALL = {NONE, DEFLATE};
+
+    /** The id recorded in object headers. */
+    private final int id;
+    /** The name used to select this codec. */
+    private final String name;
+
+    /** A codec with header id ID and name NAME. */
+    private Codec(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    /** Return the id recorded in object headers. */
+    int id() {
+        return id;
+    }
+
+    /** Return the codec with header id ID.  Throws IllegalArgumentException
+     *  if there is none. */
+    static Codec forId(int id) {
+        if (id < 0 || id >= ALL.length) {
+            throw new IllegalArgumentException("unknown codec " + id);
+        }
+        return ALL[id];
+    }
+
+    /** Return the codec named NAME, or DEFLATE if NAME is null or
+     *  unknown. */
+    static Codec forName(String name) {
+        for (Codec codec : ALL) {
+            if (codec.name.equals(name)) {
+                return codec;
+            }
+        }
+        return DEFLATE;
+    }
+
+    /** Return a stream that encodes what is written to it onto OUT.
+     *  Closing it closes OUT. */
+    abstract OutputStream encode(OutputStream out);
+
+    /** Return a stream that decodes IN.  Closing it closes IN. */
+    abstract InputStream decode(InputStream in);
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -1,26 +1,44 @@
 package gitlet;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
-/** Commit class for Gitlet.
+import java.util.Map;
+import java.util.TreeMap;
+/** Commit class for Gitlet.  A stored commit is MAGIC and VERSION, the
+ *  date in milliseconds, the message, both parents and the id of the
+ *  Tree of its files, written with Binary.  Commits of version 1 hold
+ *  a flat table of their files instead, and ones stored before that
+ *  are Java serialized; both are still read.
  *  @author Yu Jia Xu
  */
 public class Commit implements Serializable {
 
-    /**
-     * working directory.
-     */
-    static final File CWD = new File(".");
-    /** Main metadata folder. */
-    private static File mainfolder  = Utils.join(CWD, ".gitlet");
+    /** Fixed so that stored commits stay readable as this class grows. */
+    private static final long serialVersionUID = -5201026050390187604L;
 
-    /**
-     * commit folder.
-     */
-    private static File commitfolder = Utils.join(mainfolder, "commit_folder");
+    /** Leading bytes of a stored commit. */
+    private static final int MAGIC = 0x47434d54;
+    /** Format version of stored commits. */
+    private static final int VERSION = 2;
+    /** Format version of stored commits holding their file table. */
+    private static final int TABLE_VERSION = 1;
+
+    /** Bytes first read of a commit when only its message is wanted. */
+    private static final int HEAD_BYTES = 256;
+
+    /** Commits read in this process. */
+    static final CommitCache CACHE =
+        new CommitCache(CommitCache.DEFAULT_WEIGHT);
 
     /**
      * date.
@@ -55,43 +73,138 @@ public class Commit implements Serializable {
      * @param p new parent
      */
     public void setP(String p) {
+        id = null;
         parent = p;
     }
 
+    /**
+     * id this commit was read under, or null if it was built here.  Its
+     * files may not hash back to it once read, since a HashMap's order
+     * depends on how it was filled.
+     */
+    private transient String id;
+
     /**
      * subparent.
      */
     private String subparent;
     /**
-     * name of files.
+     * name of files, set only while this commit is Java serialized or
+     * deserialized.
      */
     private HashMap<String, String> files;
 
+    /**
+     * files of this commit by path, or null until asked for.
+     */
+    private transient FileMap map;
+
+    /**
+     * files of this commit, or null until asked for.
+     */
+    private transient Tree tree;
+
+    /**
+     * id of the tree of this commit if it is stored and not yet read.
+     */
+    private transient String treeid;
+
+    /**
+     * store the tree of this commit is read from.
+     */
+    private transient ObjectStore trees;
+
+    /**
+     * weight of this commit in the commit cache, or 0 until weighed.
+     */
+    private transient long weight;
+
+    /**
+     * Reads every folder of this commit's tree the first time it is
+     * called; Tree.diff and blob read only what they need.
+     * @return file set, by path, which must not be changed
+     */
+    public synchronized FileMap getFiles() {
+        if (map == null) {
+            HashMap<String, String> flat = new HashMap<>();
+            tree().flatten("", flat);
+            map = FileMap.of(flat);
+        }
+        return map;
+    }
+
     /**
      *
-     * @return file set
+     * @param path path of a file
+     * @return the blob of that file in this commit, or null
      */
-    public HashMap<String, String> getFiles() {
-        return files;
+    public synchronized String blob(String path) {
+        return map != null ? map.get(path) : tree().get(path);
     }
 
     /**
      *
-     * @param key file to remove
+     * @return the files of this commit as a tree
+     */
+    synchronized Tree tree() {
+        if (tree == null) {
+            tree = treeid != null ? Tree.read(trees, treeid)
+                : Tree.of(map);
+        }
+        return tree;
+    }
+
+    /**
+     * Commits stored with trees are compared folder by folder, skipping
+     * equal folders; ones holding only a flat table are compared in one
+     * pass over both tables.
+     * @param before a commit
+     * @param after another commit
+     * @return each path whose blob differs between BEFORE and AFTER, in
+     *         path order, mapped to its blob in each or null where it is
+     *         missing
      */
-    public void removefile(String key) {
-        files.remove(key);
+    static Map<String, String[]> diff(Commit before, Commit after) {
+        if (before.flat() || after.flat()) {
+            return FileMap.diff(before.getFiles(), after.getFiles());
+        }
+        TreeMap<String, String[]> changes = new TreeMap<>();
+        Tree.diff(before.tree(), after.tree(), "", changes);
+        return changes;
     }
 
     /**
-     * ancestor set of this commit.
+     *
+     * @return true iff the files of this commit are only a flat table,
+     *         as in commits stored before trees
      */
-    private HashMap<String, Integer> ancestor;
+    private synchronized boolean flat() {
+        return tree == null && treeid == null;
+    }
 
     /**
-     * ancestor sets for given id.
+     * A commit whose files are stored in trees weighs one, since they
+     * are read only as they are needed.  Only commits as decoded are
+     * cached and fromFile hands out copies, so no cached commit reads
+     * its trees or flattens its files, and its weight never changes.
+     * @return weight of this commit in the commit cache
      */
-    private ArrayList<String> inancestor;
+    synchronized long weight() {
+        if (weight == 0) {
+            weight = 1 + (treeid != null ? 0 : getFiles().size());
+        }
+        return weight;
+    }
+
+    /**
+     *
+     * @param key file to remove
+     */
+    public synchronized void removefile(String key) {
+        id = null;
+        tree().remove(key);
+        map = null;
+    }
 
     /**
      *
@@ -100,7 +213,7 @@ public class Commit implements Serializable {
      * @param cf commit folder
      */
     Commit(Date d, String m, File cf) {
-        files = new HashMap<>();
+        tree = new Tree();
         CF = cf;
         this.date = d;
         this.message = m;
@@ -115,13 +228,87 @@ public class Commit implements Serializable {
     }
 
     /**
-     *
-     * @param name name in commit folder
+     * Commits are cached as decoded; each call gets its own copy, which
+     * reads its trees from TREES and keeps the files it reads.
+     * @param commits store holding the commit
+     * @param trees store holding its trees
+     * @param name id of the commit
+     * @return commit with that id
+     */
+    public static Commit fromFile(ObjectStore commits, ObjectStore trees,
+                                  String name) {
+        Commit cached = CACHE.get(commits, name);
+        if (cached == null) {
+            cached = decode(commits.read(name));
+            cached.id = name;
+            CACHE.put(commits, name, cached);
+        }
+        return cached.copy(trees);
+    }
+
+    /**
+     * The copy shares only the flat file table, which is never changed.
+     * @param store store holding the trees of the copy
+     * @return a copy of this commit as decoded
+     */
+    private Commit copy(ObjectStore store) {
+        Commit result = new Commit(date, message, CF);
+        result.tree = null;
+        result.id = id;
+        result.parent = parent;
+        result.subparent = subparent;
+        result.map = map;
+        result.treeid = treeid;
+        result.trees = store;
+        return result;
+    }
+
+    /**
+     * The files of a commit read only this way are not available.
+     * @param commits store holding the commit
+     * @param name id of the commit
      * @return commit with that id
      */
-    public static Commit fromFile(String name) {
-        File commitFile = Utils.join(commitfolder, name);
-        return Utils.readObject(commitFile, Commit.class);
+    public static Commit fromFile(ObjectStore commits, String name) {
+        return fromFile(commits, null, name);
+    }
+
+    /**
+     * Reads no more of the stored commit than it must, so its files are
+     * neither read nor decoded.
+     * @param commits store holding the commit
+     * @param name id of the commit
+     * @return the message of the commit with that id
+     */
+    static String message(ObjectStore commits, String name) {
+        Commit cached = CACHE.get(commits, name);
+        if (cached != null) {
+            return cached.message;
+        }
+        byte[] head = new byte[HEAD_BYTES];
+        try (InputStream in = commits.open(name)) {
+            int n = in.readNBytes(head, 0, head.length);
+            while (!Binary.isSerialized(head)) {
+                ByteBuffer buf = ByteBuffer.wrap(head, 0, n);
+                try {
+                    if (buf.getInt() != MAGIC || !known(buf.get())) {
+                        throw new IllegalArgumentException("bad commit");
+                    }
+                    Binary.readSigned(buf);
+                    return Binary.readString(buf);
+                } catch (IOException | BufferUnderflowException excp) {
+                    if (n < head.length) {
+                        throw new IllegalArgumentException("bad commit: "
+                                                           + excp);
+                    }
+                }
+                head = Arrays.copyOf(head, 2 * head.length);
+                n += in.readNBytes(head, n, head.length - n);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return fromFile(commits, name).message;
     }
 
     /**
@@ -129,6 +316,7 @@ public class Commit implements Serializable {
      * @param sha1commit commit of subparent
      */
     public void setSubparent(String sha1commit) {
+        id = null;
         subparent = sha1commit;
     }
 
@@ -140,14 +328,29 @@ public class Commit implements Serializable {
         return subparent;
     }
 
+    /**
+     *
+     * @return ids of the parents of this commit, main parent first
+     */
+    public String[] parents() {
+        if (parent == null || parent.equals("null")) {
+            return new String[0];
+        } else if (subparent == null) {
+            return new String[] {parent};
+        }
+        return new String[] {parent, subparent};
+    }
+
 
     /**
      *
      * @param name name of file
      * @param con content of file
      */
-    public void addfiles(String name, String con) {
-        files.put(name, con);
+    public synchronized void addfiles(String name, String con) {
+        id = null;
+        tree().put(name, con);
+        map = null;
     }
 
     /**
@@ -173,162 +376,112 @@ public class Commit implements Serializable {
      * @return chlid of this commit
      */
     public Commit createChild(Date d, String m) {
-        Commit child = new Commit(d, m, commitfolder);
-        for (String filename: files.keySet()) {
-            child.addfiles(filename, files.get(filename));
-        }
+        Commit child = new Commit(d, m, CF);
+        child.tree = tree().copy();
+        child.trees = trees;
         return child;
     }
 
     /**
      * save current commit.
+     * @param commits store to save it in
+     * @param trees store to save the trees it does not share in
      */
-    public void saveCommit() {
-        Utils.writeObject(Utils.join(CF, sha1()), this);
+    public void saveCommit(ObjectStore commits, ObjectStore trees) {
+        tree().save(trees);
+        commits.write(sha1(), encode());
     }
 
     /**
      *
-     * @return sha1 code of this class
-     */
-    public String sha1() {
-        return Utils.sha1(date.toString(), message, parent, files.toString());
-    }
-
-    /**
-     * setup the ancestor set.
-     */
-    public void setupancestor() {
-        ancestor = new HashMap<>();
-        inancestor = new ArrayList<>();
-        ancestor.put(sha1(), 0);
-        doactualsetup(parent, subparent, 1);
+     * @return this commit in the stored format
+     */
+    byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            Binary.writeSigned(out, date.getTime());
+            Binary.writeString(out, message);
+            Binary.writeId(out, parent);
+            Binary.writeId(out, subparent);
+            Binary.writeId(out, tree().id());
+        } catch (IOException excp) {
+            throw Utils.error("Internal error serializing commit.");
+        }
+        return bytes.toByteArray();
     }
 
     /**
      *
-     * @param firstparent main parent
-     * @param secondparent sub parent
-     * @param step step counting
-     */
-    public void doactualsetup(String firstparent,
-                              String secondparent, Integer step) {
-        if (!firstparent.equals("null")) {
-            if (ancestor.containsKey(firstparent)) {
-                if (ancestor.get(firstparent) > step) {
-                    ancestor.put(firstparent, step);
-                }
-            } else {
-                ancestor.put(firstparent, step);
-            }
-            Commit firstcommit = fromFile(firstparent);
-            String firstsub = firstcommit.getparent();
-            String secondsub = firstcommit.getSubparent();
-            doactualsetup(firstsub, secondsub, step + 1);
+     * @param data a commit in the stored format, or Java serialized
+     * @return the commit
+     */
+    static Commit decode(byte[] data) {
+        if (Binary.isSerialized(data)) {
+            Commit result = Utils.deserialize(data, Commit.class);
+            result.map = FileMap.of(result.files);
+            result.files = null;
+            return result;
         }
-        if (secondparent != null) {
-            if (ancestor.containsKey(secondparent)) {
-                if (ancestor.get(secondparent) > step) {
-                    ancestor.put(secondparent, step);
-                }
+        ByteBuffer in = ByteBuffer.wrap(data);
+        try {
+            int version = in.getInt() == MAGIC ? in.get() : -1;
+            if (!known(version)) {
+                throw new IllegalArgumentException("bad commit");
+            }
+            Commit result = new Commit(new Date(Binary.readSigned(in)),
+                                       Binary.readString(in), null);
+            result.parent = Binary.readId(in);
+            result.subparent = Binary.readId(in);
+            result.tree = null;
+            if (version == TABLE_VERSION) {
+                TreeMap<String, String> table = new TreeMap<>();
+                Binary.readTable(in, table);
+                result.map = FileMap.of(table);
             } else {
-                ancestor.put(secondparent, step);
+                result.treeid = Binary.readId(in);
             }
-            Commit secondcommit = fromFile(secondparent);
-            String firstsub = secondcommit.getparent();
-            String secondsub = secondcommit.getSubparent();
-            doactualsetup(firstsub, secondsub, step + 1);
+            return result;
+        } catch (IOException | BufferUnderflowException excp) {
+            throw new IllegalArgumentException("bad commit: " + excp);
         }
     }
 
     /**
      *
-     * @param branchid given id
-     */
-    public void setupinancestor(String branchid) {
-        inancestor.add(branchid);
-        Commit branchcommit = fromFile(branchid);
-        String firstparent = branchcommit.getparent();
-        String secondparent = branchcommit.getSubparent();
-        doinancestor(firstparent, secondparent);
-    }
-
-    /**
-     *
-     * @param firstparent main parent
-     * @param secondparent sub parent
+     * @param version format version of a stored commit
+     * @return true iff commits stored in that version can be read
      */
-    public void doinancestor(String firstparent, String secondparent) {
-        if (!firstparent.equals("null")) {
-            if (!inancestor.contains(firstparent)) {
-                inancestor.add(firstparent);
-            }
-            Commit firstcommit = fromFile(firstparent);
-            String firstsub = firstcommit.getparent();
-            String secondsub = firstcommit.getSubparent();
-            doinancestor(firstsub, secondsub);
-        }
-        if (secondparent != null) {
-            if (!inancestor.contains(secondparent)) {
-                inancestor.add(secondparent);
-            }
-            Commit secondcommit = fromFile(secondparent);
-            String firstsub = secondcommit.getparent();
-            String secondsub = secondcommit.getSubparent();
-            doinancestor(firstsub, secondsub);
-        }
+    private static boolean known(int version) {
+        return version == VERSION || version == TABLE_VERSION;
     }
 
     /**
-     * a very large number.
+     * Commits are Java serialized only by older versions of Gitlet and
+     * by tests, which expect the flat file table.
+     * @param out stream to write this commit to
+     * @throws IOException if it cannot be written
      */
-    static final int LARGE = 99999;
-
-    /**
-     *
-     * @return common ancestor
-     */
-    public String getcommonan() {
-        String ans = inancestor.get(0);
-        Integer min = LARGE;
-        for (String ele: inancestor) {
-            Integer temp = ancestor.get(ele);
-            if (temp != null && temp < min) {
-                min = temp;
-                ans = ele;
-            }
+    private synchronized void writeObject(ObjectOutputStream out)
+        throws IOException {
+        files = new HashMap<>(getFiles());
+        try {
+            out.defaultWriteObject();
+        } finally {
+            files = null;
         }
-        return ans;
-    }
-
-    /**
-     * for cleaning up the sets.
-     */
-    public void cleanupmergeset() {
-        ancestor = null;
-        inancestor = null;
     }
 
     /**
      *
-     * @param branchid given branchid
-     * @param check nothing just for checking
-     * @return the string of split point
-     */
-    public String findleastans(String branchid, boolean check) {
-        setupancestor();
-        setupinancestor(branchid);
-        String result = getcommonan();
-        if (check) {
-            System.out.println(ancestor.toString());
-            System.out.println(inancestor.toString());
-            System.out.println(result);
+     * @return sha1 code of this class
+     */
+    public synchronized String sha1() {
+        if (id != null) {
+            return id;
         }
-
-        cleanupmergeset();
-        return result;
+        return Utils.sha1(date.toString(), message, parent, tree().id());
     }
 
-
-
 }
@@ -0,0 +1,132 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** A size-bounded cache of commits by store and id, evicting the least
+ *  recently used first.  A stored commit never changes, so one cache can
+ *  serve every command in a process; commits are keyed by the store they
+ *  were read from as well, so repositories never see each other's.  Each
+ *  commit weighs one plus the number of files in its flat table, which
+ *  is roughly what it costs to decode and to keep; a commit whose files
+ *  are in trees weighs one.
+ *  @author Yu Jia Xu
+ */
+class CommitCache {
+
+    /** Default total weight of the cached commits. */
+    static final long DEFAULT_WEIGHT = 1L << 20;
+
+    /** Largest total weight kept. */
+    private final long capacity;
+    /** Cached commits by store and id, least recently used first. */
+    private final LinkedHashMap<Key, Commit> commits =
+        new LinkedHashMap<>(16, 0.75f, true);
+    /** Total weight of the cached commits. */
+    private long weight;
+    /** Lookups that found their commit. */
+    private long hits;
+    /** Lookups that did not. */
+    private long misses;
+    /** Commits dropped to stay within CAPACITY. */
+    private long evictions;
+
+    /** A cache holding commits of total weight at most CAPACITY. */
+    CommitCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /** Return the cached commit ID of STORE, or null if it is not
+     *  cached. */
+    synchronized Commit get(ObjectStore store, String id) {
+        Commit result = commits.get(new Key(store, id));
+        if (result == null) {
+            misses += 1;
+        } else {
+            hits += 1;
+        }
+        return result;
+    }
+
+    /** Cache COMMIT as the commit ID of STORE, evicting the least
+     *  recently used commits to stay within the capacity. */
+    synchronized void put(ObjectStore store, String id, Commit commit) {
+        Key key = new Key(store, id);
+        long w = weigh(commit);
+        if (w > capacity || commits.containsKey(key)) {
+            return;
+        }
+        commits.put(key, commit);
+        weight += w;
+        Iterator<Map.Entry<Key, Commit>> it =
+            commits.entrySet().iterator();
+        while (weight > capacity && it.hasNext()) {
+            weight -= weigh(it.next().getValue());
+            it.remove();
+            evictions += 1;
+        }
+    }
+
+    /** Return the number of lookups that found their commit. */
+    synchronized long hits() {
+        return hits;
+    }
+
+    /** Return the number of lookups that did not. */
+    synchronized long misses() {
+        return misses;
+    }
+
+    /** Return the number of commits evicted. */
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    /** Return the number of commits cached. */
+    synchronized int size() {
+        return commits.size();
+    }
+
+    /** Return the total weight of the cached commits. */
+    synchronized long weight() {
+        return weight;
+    }
+
+    /** Return the weight of COMMIT. */
+    private static long weigh(Commit commit) {
+        return commit.weight();
+    }
+
+    /** A commit id in one store. */
+    private static final class Key {
+        /** Store the commit was read from. */
+        private final ObjectStore store;
+        /** Id of the commit. */
+        private final String id;
+
+        /** The commit ID of STORE. */
+        Key(ObjectStore store, String id) {
+            this.store = store;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).store == store
+                && ((Key) o).id.equals(id);
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode() * 31 + System.identityHashCode(store);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d commits cached, %d hits, %d misses, "
+                             + "%d evicted", commits.size(), hits, misses,
+                             evictions);
+    }
+}
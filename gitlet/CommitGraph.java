@@ -0,0 +1,757 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/** A compact, memory-mapped table of the commit DAG, so that history walks
+ *  need not deserialize whole commits just to find their parents.
+ *
+ *  File layout (all integers big-endian):
+ *  <pre>
+ *    magic, version, count                     3 ints
+ *    fan-out: ids whose first byte is &lt;= b     256 ints
+ *    ids, sorted                               count * 20 bytes
+ *    parent, subparent, generation, date       count * (3 ints + 1 long)
+ *  </pre>
+ *  Parents are indices into the table, or NONE.  The generation of a root
+ *  commit is 1 and every other commit's is one more than its parents'
+ *  largest, so no commit can be an ancestor of one with a smaller
+ *  generation.
+ *
+ *  New commits are appended to a layer file beside the table, so that
+ *  committing costs one short write, and the layer is merged into the
+ *  table once it holds LAYER_LIMIT commits.  The layer is LAYER_MAGIC
+ *  and VERSION followed by one record per commit: its raw id, its
+ *  number of parents and their raw ids, padded to two, its generation
+ *  and its date.  A record torn by a crash is ignored, as are records of
+ *  commits already in the table.  Indices number the commits of both,
+ *  together, in id order.
+ *  @author Yu Jia Xu
+ */
+class CommitGraph {
+
+    /** File magic, "CGPH". */
+    private static final int MAGIC = 0x43475048;
+    /** Format version. */
+    private static final int VERSION = 1;
+    /** Number of fan-out entries. */
+    private static final int FANOUT = 256;
+    /** Byte mask. */
+    private static final int BYTE = 0xff;
+    /** Size of the header in bytes. */
+    private static final int HEADER = 3 * Integer.BYTES;
+    /** Size of one record in bytes. */
+    private static final int RECORD = 3 * Integer.BYTES + Long.BYTES;
+    /** Parent index meaning "no parent". */
+    static final int NONE = -1;
+
+    /** Layer file magic, "CGLY". */
+    private static final int LAYER_MAGIC = 0x43474c59;
+    /** Size of one layer record in bytes. */
+    private static final int LAYER_RECORD =
+        3 * Utils.UID_BYTES + 1 + Integer.BYTES + Long.BYTES;
+    /** Commits the layer holds before it is merged into the table. */
+    static final int LAYER_LIMIT = 64;
+
+    /** Mapped contents of the table, or null for an empty one. */
+    private final ByteBuffer buf;
+    /** Number of commits in the table. */
+    private final int base;
+    /** Number of commits in the table and the layer. */
+    private final int count;
+    /** Offset of the id table. */
+    private final int idsAt;
+    /** Offset of the record table. */
+    private final int recordsAt;
+    /** Raw ids of the commits in the layer, sorted. */
+    private final byte[][] layerIds;
+    /** Index of each commit in the layer, in the order of LAYERIDS. */
+    private final int[] layerAt;
+    /** Number of commits in the table whose ids are below each commit
+     *  in the layer, in the order of LAYERIDS. */
+    private final int[] layerRank;
+    /** Parent, subparent and generation of each commit in the layer. */
+    private final int[] layerP1, layerP2, layerGen;
+    /** Date of each commit in the layer. */
+    private final long[] layerDate;
+
+    /** A graph over the mapped table BUF (null if empty) and the records
+     *  LAYER read from its layer file. */
+    private CommitGraph(ByteBuffer buf, ByteBuffer layer) {
+        this.buf = buf;
+        if (buf == null) {
+            base = 0;
+        } else {
+            if (buf.getInt(0) != MAGIC
+                || buf.getInt(Integer.BYTES) != VERSION) {
+                throw new IllegalArgumentException("bad commit graph");
+            }
+            base = buf.getInt(2 * Integer.BYTES);
+        }
+        idsAt = HEADER + FANOUT * Integer.BYTES;
+        recordsAt = idsAt + base * Utils.UID_BYTES;
+        TreeMap<byte[], byte[]> records =
+            new TreeMap<>(Arrays::compareUnsigned);
+        while (layer != null && layer.remaining() >= LAYER_RECORD) {
+            byte[] record = new byte[LAYER_RECORD];
+            layer.get(record);
+            byte[] id = Arrays.copyOf(record, Utils.UID_BYTES);
+            if (findBase(id) == NONE) {
+                records.put(id, record);
+            }
+        }
+        int n = records.size();
+        count = base + n;
+        layerIds = records.keySet().toArray(new byte[n][]);
+        layerAt = new int[n];
+        layerRank = new int[n];
+        for (int j = 0; j < n; j += 1) {
+            layerRank[j] = baseAbove(layerIds[j], false);
+            layerAt[j] = layerRank[j] + j;
+        }
+        layerP1 = new int[n];
+        layerP2 = new int[n];
+        layerGen = new int[n];
+        layerDate = new long[n];
+        int j = 0;
+        for (byte[] record : records.values()) {
+            ByteBuffer in = ByteBuffer.wrap(record, Utils.UID_BYTES,
+                                            LAYER_RECORD - Utils.UID_BYTES);
+            int parents = in.get();
+            int[] ps = {NONE, NONE};
+            for (int i = 0; i < 2; i += 1) {
+                byte[] parent = new byte[Utils.UID_BYTES];
+                in.get(parent);
+                if (i < parents) {
+                    ps[i] = find(parent);
+                    if (ps[i] == NONE) {
+                        throw new IllegalArgumentException(
+                            "bad commit graph layer");
+                    }
+                }
+            }
+            layerP1[j] = ps[0];
+            layerP2[j] = ps[1];
+            layerGen[j] = in.getInt();
+            layerDate[j] = in.getLong();
+            j += 1;
+        }
+    }
+
+    /** Return the graph stored in FILE and its layer, which is empty if
+     *  neither exists. */
+    static CommitGraph load(File file) {
+        ByteBuffer table = null, layer = null;
+        File layerFile = layerFile(file);
+        try {
+            if (file.isFile()) {
+                try (FileChannel ch = FileChannel.open(
+                         file.toPath(), StandardOpenOption.READ)) {
+                    table = ch.map(FileChannel.MapMode.READ_ONLY, 0,
+                                   ch.size());
+                }
+            }
+            if (layerFile.isFile()) {
+                layer = ByteBuffer.wrap(Files.readAllBytes(
+                    layerFile.toPath()));
+                if (layer.remaining() < 2 * Integer.BYTES
+                    || layer.getInt() != LAYER_MAGIC
+                    || layer.getInt() != VERSION) {
+                    layer = null;
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return new CommitGraph(table, layer);
+    }
+
+    /** Delete the graph stored in FILE and its layer. */
+    static void delete(File file) {
+        file.delete();
+        layerFile(file).delete();
+    }
+
+    /** Return the layer file of the graph stored in FILE. */
+    private static File layerFile(File file) {
+        return new File(file.getPath() + "-layer");
+    }
+
+    /** Return the graph stored in FILE, first rebuilding it from the
+     *  commits in COMMITS if it is missing or lacks any of REQUIRED. */
+    static CommitGraph open(File file, ObjectStore commits,
+                            String... required) {
+        CommitGraph graph = load(file);
+        boolean stale = graph.size() == 0;
+        for (String id : required) {
+            stale |= !graph.contains(id);
+        }
+        if (stale) {
+            List<String> ids = commits.list();
+            if (!ids.isEmpty()) {
+                graph = rebuild(file, commits, ids);
+            }
+        }
+        return graph;
+    }
+
+    /** Return the number of commits in this graph. */
+    int size() {
+        return count;
+    }
+
+    /** Return the index of commit ID, or NONE if it is not in this graph. */
+    int find(String id) {
+        if (count == 0 || id == null || id.length() != Utils.UID_LENGTH) {
+            return NONE;
+        }
+        return find(Utils.hexToBytes(id));
+    }
+
+    /** Return the index of the commit with raw id KEY, or NONE. */
+    private int find(byte[] key) {
+        int b = findBase(key);
+        if (b != NONE) {
+            return index(b);
+        }
+        int j = Arrays.binarySearch(layerIds, key,
+                                    Arrays::compareUnsigned);
+        return j < 0 ? NONE : layerAt[j];
+    }
+
+    /** Return the position in the table of the commit with raw id KEY, or
+     *  NONE if the table lacks it. */
+    private int findBase(byte[] key) {
+        if (base == 0) {
+            return NONE;
+        }
+        int first = key[0] & BYTE;
+        int lo = first == 0 ? 0 : fanout(first - 1);
+        int hi = fanout(first) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compareAt(mid, key);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return NONE;
+    }
+
+    /** Return true iff commit ID is in this graph. */
+    boolean contains(String id) {
+        return find(id) != NONE;
+    }
+
+    /** Return the range [lo, hi) of the indices of the commits whose ids
+     *  start with the hexadecimal digits PREFIX.  The range is empty if
+     *  PREFIX is not hexadecimal or is longer than an id. */
+    int[] prefixRange(String prefix) {
+        String p = prefix.toLowerCase();
+        if (count == 0 || p.length() > Utils.UID_LENGTH
+            || !p.matches("[0-9a-f]*")) {
+            return new int[] {0, 0};
+        }
+        int pad = Utils.UID_LENGTH - p.length();
+        byte[] low = Utils.hexToBytes(p + "0".repeat(pad));
+        byte[] high = Utils.hexToBytes(p + "f".repeat(pad));
+        return new int[] {firstAbove(low, false), firstAbove(high, true)};
+    }
+
+    /** Return the shortest prefix of commit ID, and at least MIN digits
+     *  of it, that no other commit in this graph shares. */
+    String abbreviate(String id, int min) {
+        int index = find(id), len = Math.min(min, Utils.UID_LENGTH);
+        if (index != NONE) {
+            for (int other : new int[] {index - 1, index + 1}) {
+                if (other >= 0 && other < count) {
+                    String o = id(other);
+                    int shared = 0;
+                    while (shared < Utils.UID_LENGTH
+                           && o.charAt(shared) == id.charAt(shared)) {
+                        shared += 1;
+                    }
+                    len = Math.max(len, Math.min(shared + 1,
+                                                 Utils.UID_LENGTH));
+                }
+            }
+        }
+        return id.substring(0, len);
+    }
+
+    /** Return the index of the first id above raw id KEY, or of the first
+     *  id at or above it unless INCLUSIVE. */
+    private int firstAbove(byte[] key, boolean inclusive) {
+        int lo = 0, hi = layerIds.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = Arrays.compareUnsigned(layerIds[mid], key);
+            if (c < 0 || inclusive && c == 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return baseAbove(key, inclusive) + lo;
+    }
+
+    /** Return the position in the table of the first id above raw id KEY,
+     *  or of the first id at or above it unless INCLUSIVE. */
+    private int baseAbove(byte[] key, boolean inclusive) {
+        if (base == 0) {
+            return 0;
+        }
+        int first = key[0] & BYTE;
+        int lo = first == 0 ? 0 : fanout(first - 1), hi = fanout(first);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compareAt(mid, key);
+            if (c < 0 || inclusive && c == 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Return the id of the commit at INDEX. */
+    String id(int index) {
+        return Utils.bytesToHex(rawId(index));
+    }
+
+    /** Return the raw id of the commit at INDEX. */
+    private byte[] rawId(int index) {
+        int j = inLayer(index);
+        if (j >= 0) {
+            return layerIds[j];
+        }
+        byte[] raw = new byte[Utils.UID_BYTES];
+        int b = position(index);
+        for (int i = 0; i < raw.length; i += 1) {
+            raw[i] = buf.get(idsAt + b * Utils.UID_BYTES + i);
+        }
+        return raw;
+    }
+
+    /** Return the main parent index of the commit at INDEX, or NONE. */
+    int parent(int index) {
+        int j = inLayer(index);
+        return j >= 0 ? layerP1[j]
+            : index(buf.getInt(recordsAt + position(index) * RECORD));
+    }
+
+    /** Return the second parent index of the commit at INDEX, or NONE. */
+    int subparent(int index) {
+        int j = inLayer(index);
+        return j >= 0 ? layerP2[j]
+            : index(buf.getInt(recordsAt + position(index) * RECORD
+                               + Integer.BYTES));
+    }
+
+    /** Return the generation number of the commit at INDEX. */
+    int generation(int index) {
+        int j = inLayer(index);
+        return j >= 0 ? layerGen[j]
+            : buf.getInt(recordsAt + position(index) * RECORD
+                         + 2 * Integer.BYTES);
+    }
+
+    /** Return the commit time of the commit at INDEX, in milliseconds. */
+    long date(int index) {
+        int j = inLayer(index);
+        return j >= 0 ? layerDate[j]
+            : buf.getLong(recordsAt + position(index) * RECORD
+                          + 3 * Integer.BYTES);
+    }
+
+    /** Return the position in the layer of the commit at INDEX, or a
+     *  negative number if it is in the table. */
+    private int inLayer(int index) {
+        return layerAt.length == 0 ? -1
+            : Arrays.binarySearch(layerAt, index);
+    }
+
+    /** Return the position in the table of the commit at INDEX, which is
+     *  there. */
+    private int position(int index) {
+        int j = inLayer(index);
+        return index + j + 1;
+    }
+
+    /** Return the index of the commit at position B of the table, or NONE
+     *  if B is NONE. */
+    private int index(int b) {
+        if (b == NONE || layerRank.length == 0) {
+            return b;
+        }
+        int lo = 0, hi = layerRank.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (layerRank[mid] <= b) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return b + lo;
+    }
+
+    /** Return the parent indices of the commit at INDEX, main first. */
+    int[] parents(int index) {
+        int p = parent(index), q = subparent(index);
+        if (p == NONE) {
+            return new int[0];
+        } else if (q == NONE) {
+            return new int[] {p};
+        }
+        return new int[] {p, q};
+    }
+
+    /** Return a walk of the history of the commit at index FROM, following
+     *  every parent if ALLPARENTS and otherwise only main parents.  With
+     *  DATEORDER commits come newest first; otherwise by generation, so
+     *  that no commit comes before any of its children.  Commits made
+     *  before SINCE are left out, along with any history reached only
+     *  through them. */
+    Walk walk(int from, boolean allParents, boolean dateOrder, long since) {
+        return new Walk(from, allParents, dateOrder, since);
+    }
+
+    /** A walk of history, visiting each commit once.  Its cost is in the
+     *  commits it visits, not the size of the graph. */
+    class Walk {
+
+        /** Commits reached but not yet visited, next first. */
+        private final PriorityQueue<Integer> queue;
+        /** Commits ever added to QUEUE. */
+        private final HashSet<Integer> seen = new HashSet<>();
+        /** True iff every parent is followed. */
+        private final boolean allParents;
+        /** Earliest commit time visited. */
+        private final long since;
+
+        /** A walk from the commit at FROM, as described at walk. */
+        private Walk(int from, boolean allParents, boolean dateOrder,
+                     long since) {
+            Comparator<Integer> byDate =
+                Comparator.comparingLong((Integer i) -> date(i)).reversed();
+            Comparator<Integer> byGeneration =
+                Comparator.comparingInt((Integer i) -> generation(i))
+                .reversed();
+            queue = new PriorityQueue<>(dateOrder
+                ? byDate.thenComparing(byGeneration)
+                : byGeneration.thenComparing(byDate));
+            this.allParents = allParents;
+            this.since = since;
+            reach(from);
+        }
+
+        /** Return the index of the next commit, or NONE when done. */
+        int next() {
+            Integer x = queue.poll();
+            if (x == null) {
+                return NONE;
+            }
+            int[] ps = parents(x);
+            for (int i = 0; i < ps.length && (i == 0 || allParents); i += 1) {
+                reach(ps[i]);
+            }
+            return x;
+        }
+
+        /** Queue the commit at INDEX unless it was reached already or was
+         *  made before SINCE. */
+        private void reach(int index) {
+            if (date(index) >= since && seen.add(index)) {
+                queue.add(index);
+            }
+        }
+    }
+
+    /** Return true iff commit ANCESTOR is DESCENDANT or one of its
+     *  ancestors.  Both must be in this graph.  Commits whose generation
+     *  is below ANCESTOR's cannot lead to it and are not walked. */
+    boolean isAncestor(String ancestor, String descendant) {
+        int target = find(ancestor), from = find(descendant);
+        if (target == NONE || from == NONE) {
+            throw new IllegalArgumentException("commit not in graph");
+        }
+        int floor = generation(target);
+        boolean[] seen = new boolean[count];
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        seen[from] = true;
+        work.push(from);
+        while (!work.isEmpty()) {
+            int x = work.pop();
+            if (x == target) {
+                return true;
+            }
+            for (int p : parents(x)) {
+                if (!seen[p] && generation(p) >= floor) {
+                    seen[p] = true;
+                    work.push(p);
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Return a parent lookup that answers from this graph and falls back
+     *  to reading commits that are not in it from COMMITS. */
+    Utils.Function<String, String[]> parentLookup(ObjectStore commits) {
+        final Utils.Function<String, String[]> fallback =
+            MergeBase.commitParents(commits);
+        return new Utils.Function<String, String[]>() {
+            @Override
+            String[] apply(String id) {
+                int index = find(id);
+                if (index == NONE) {
+                    return fallback.apply(id);
+                }
+                int[] ps = parents(index);
+                String[] result = new String[ps.length];
+                for (int i = 0; i < ps.length; i += 1) {
+                    result[i] = id(ps[i]);
+                }
+                return result;
+            }
+        };
+    }
+
+    /** Return a generation lookup that answers from this graph, and
+     *  with -1 for commits that are not in it. */
+    Utils.Function<String, Integer> generationLookup() {
+        return new Utils.Function<String, Integer>() {
+            @Override
+            Integer apply(String id) {
+                int index = find(id);
+                return index == NONE ? -1 : generation(index);
+            }
+        };
+    }
+
+    /** Record commit ID with parent ids PARENTS and commit time DATE in
+     *  FILE, which holds this graph, and return the new graph.  The commit
+     *  is appended to the layer, which is merged into the table once it
+     *  is full.  If a parent is missing, the graph is rebuilt from
+     *  COMMITS instead. */
+    CommitGraph add(File file, ObjectStore commits, String id,
+                    String[] parents, long date) {
+        if (contains(id)) {
+            return this;
+        }
+        int[] pidx = new int[parents.length];
+        int gen = 1;
+        for (int i = 0; i < parents.length; i += 1) {
+            pidx[i] = find(parents[i]);
+            if (pidx[i] == NONE) {
+                return rebuild(file, commits, commits.list());
+            }
+            gen = Math.max(gen, generation(pidx[i]) + 1);
+        }
+        byte[] key = Utils.hexToBytes(id);
+        if (layerIds.length + 1 < LAYER_LIMIT) {
+            append(file, key, parents, gen, date);
+            return load(file);
+        }
+        int at = firstAbove(key, false);
+        int n = count + 1;
+        byte[][] ids = new byte[n][];
+        int[] p1 = new int[n], p2 = new int[n], gens = new int[n];
+        long[] dates = new long[n];
+        for (int i = 0, j = 0; i < n; i += 1) {
+            if (i == at) {
+                ids[i] = key;
+                p1[i] = pidx.length > 0 ? shift(pidx[0], at) : NONE;
+                p2[i] = pidx.length > 1 ? shift(pidx[1], at) : NONE;
+                gens[i] = gen;
+                dates[i] = date;
+            } else {
+                ids[i] = rawId(j);
+                p1[i] = shift(parent(j), at);
+                p2[i] = shift(subparent(j), at);
+                gens[i] = generation(j);
+                dates[i] = date(j);
+                j += 1;
+            }
+        }
+        write(file, ids, p1, p2, gens, dates);
+        return load(file);
+    }
+
+    /** Append to the layer of the graph in FILE the commit with raw id KEY,
+     *  parent ids PARENTS, generation GEN and commit time DATE. */
+    private static void append(File file, byte[] key, String[] parents,
+                               int gen, long date) {
+        File layer = layerFile(file);
+        try (FileChannel ch = FileChannel.open(layer.toPath(),
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long end = ch.size();
+            ByteBuffer out = ByteBuffer.allocate(2 * Integer.BYTES
+                                                 + LAYER_RECORD);
+            if (end < 2 * Integer.BYTES) {
+                out.putInt(LAYER_MAGIC).putInt(VERSION);
+                end = 0;
+            } else {
+                end -= (end - 2 * Integer.BYTES) % LAYER_RECORD;
+            }
+            out.put(key).put((byte) parents.length);
+            for (int i = 0; i < 2; i += 1) {
+                out.put(i < parents.length ? Utils.hexToBytes(parents[i])
+                        : new byte[Utils.UID_BYTES]);
+            }
+            out.putInt(gen).putLong(date);
+            out.flip();
+            ch.truncate(end);
+            ch.position(end);
+            while (out.hasRemaining()) {
+                ch.write(out);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return index P of the old table as an index into a table with a new
+     *  entry inserted at AT. */
+    private static int shift(int p, int at) {
+        return p != NONE && p >= at ? p + 1 : p;
+    }
+
+    /** Write a graph over every commit in IDS, read from the store
+     *  COMMITS, to FILE and return it. */
+    static CommitGraph rebuild(File file, ObjectStore commits,
+                               List<String> ids) {
+        String[] sorted = ids.toArray(new String[0]);
+        Arrays.sort(sorted);
+        int n = sorted.length;
+        HashMap<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < n; i += 1) {
+            index.put(sorted[i], i);
+        }
+        byte[][] raw = new byte[n][];
+        int[] p1 = new int[n], p2 = new int[n], gens = new int[n];
+        long[] dates = new long[n];
+        for (int i = 0; i < n; i += 1) {
+            Commit c = Commit.decode(commits.read(sorted[i]));
+            String[] ps = c.parents();
+            raw[i] = Utils.hexToBytes(sorted[i]);
+            p1[i] = ps.length > 0 ? index.get(ps[0]) : NONE;
+            p2[i] = ps.length > 1 ? index.get(ps[1]) : NONE;
+            dates[i] = c.getDate().getTime();
+        }
+        for (int i = 0; i < n; i += 1) {
+            generate(i, p1, p2, gens);
+        }
+        write(file, raw, p1, p2, gens, dates);
+        return load(file);
+    }
+
+    /** Fill in GENS for commit START and its ancestors, given parent
+     *  tables P1 and P2, without recursion. */
+    private static void generate(int start, int[] p1, int[] p2, int[] gens) {
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        work.push(start);
+        while (!work.isEmpty()) {
+            int x = work.peek();
+            if (gens[x] != 0) {
+                work.pop();
+                continue;
+            }
+            boolean ready = true;
+            int gen = 1;
+            for (int p : new int[] {p1[x], p2[x]}) {
+                if (p == NONE) {
+                    continue;
+                } else if (gens[p] == 0) {
+                    ready = false;
+                    work.push(p);
+                } else {
+                    gen = Math.max(gen, gens[p] + 1);
+                }
+            }
+            if (ready) {
+                gens[x] = gen;
+                work.pop();
+            }
+        }
+    }
+
+    /** Atomically replace FILE with the graph of sorted raw ids IDS,
+     *  parent tables P1 and P2, generations GENS and dates DATES. */
+    private static void write(File file, byte[][] ids, int[] p1, int[] p2,
+                              int[] gens, long[] dates) {
+        File temp = Utils.tempFile(file);
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(
+                     temp.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ids.length);
+            int[] fanout = new int[FANOUT];
+            for (byte[] id : ids) {
+                fanout[id[0] & BYTE] += 1;
+            }
+            for (int b = 0, total = 0; b < FANOUT; b += 1) {
+                total += fanout[b];
+                out.writeInt(total);
+            }
+            for (byte[] id : ids) {
+                out.write(id);
+            }
+            for (int i = 0; i < ids.length; i += 1) {
+                out.writeInt(p1[i]);
+                out.writeInt(p2[i]);
+                out.writeInt(gens[i]);
+                out.writeLong(dates[i]);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        layerFile(file).delete();
+    }
+
+    /** Return the number of ids whose first byte is at most B. */
+    private int fanout(int b) {
+        return buf.getInt(HEADER + b * Integer.BYTES);
+    }
+
+    /** Compare the id at INDEX with raw id KEY as unsigned bytes. */
+    private int compareAt(int index, byte[] key) {
+        int base = idsAt + index * Utils.UID_BYTES;
+        for (int i = 0; i < key.length; i += 1) {
+            int c = (buf.get(base + i) & BYTE) - (key[i] & BYTE);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,220 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/** A long-running Gitlet process that runs commands sent to it over a
+ *  Unix domain socket in the repository's .gitlet folder, so that each
+ *  command skips JVM startup and finds the repository's caches already
+ *  warm.  Commands run one at a time, exactly as Main.main would run
+ *  them.
+ *
+ *  A request is the number of arguments followed by each argument, as
+ *  written by DataOutputStream.  The reply is a series of frames, each a
+ *  stream byte (OUT or ERR), a length and that many bytes of output,
+ *  ended by an EXIT byte and the command's exit status.
+ *  @author Yu Jia Xu
+ */
+class Daemon {
+
+    /** Frame of standard output. */
+    static final int OUT = 1;
+    /** Frame of standard error. */
+    static final int ERR = 2;
+    /** Final frame, carrying the exit status. */
+    static final int EXIT = 0;
+
+    /** Size of the output buffers. */
+    private static final int BUFFER = 1 << 13;
+
+    /** Return the socket of the daemon serving the repository in the
+     *  working folder ROOT. */
+    static File socket(File root) {
+        return Utils.join(root, ".gitlet", "daemon.sock");
+    }
+
+    /** Listen on SOCKET and run the requests sent to it on REPO until one
+     *  asks to stop. */
+    static void serve(Repository repo, File socket) {
+        if (socket.exists()) {
+            try (SocketChannel ch = connect(socket)) {
+                throw Utils.error("A Gitlet daemon is already running.");
+            } catch (IOException excp) {
+                socket.delete();
+            }
+        }
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket.toPath()));
+            Runtime.getRuntime().addShutdownHook(
+                new Thread(() -> socket.delete()));
+            boolean stopping = false;
+            while (!stopping) {
+                try (SocketChannel ch = server.accept()) {
+                    stopping = handle(repo, ch);
+                } catch (IOException excp) {
+                    /* The client went away; serve the next one. */
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            socket.delete();
+        }
+    }
+
+    /** Ask the daemon listening on SOCKET to stop, copying its reply to
+     *  OUT and ERR. */
+    static void stop(File socket, OutputStream out, OutputStream err) {
+        if (!socket.exists()
+            || run(socket, new String[] {"daemon", "stop"}, out, err) < 0) {
+            throw Utils.error("No Gitlet daemon is running.");
+        }
+    }
+
+    /** Run the command ARGS on the daemon listening on SOCKET, copying its
+     *  output to OUT and ERR, and return its exit status, or -1 if no
+     *  daemon could be reached.  If the daemon fails once it has the
+     *  command, that is reported on ERR with status 1, since the command
+     *  may have run. */
+    static int run(File socket, String[] args, OutputStream out,
+                   OutputStream err) {
+        SocketChannel ch;
+        try {
+            ch = connect(socket);
+        } catch (IOException excp) {
+            return -1;
+        }
+        try (ch) {
+            DataOutputStream request = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(ch)));
+            request.writeInt(args.length);
+            for (String arg : args) {
+                request.writeUTF(arg);
+            }
+            request.flush();
+            DataInputStream reply =
+                new DataInputStream(Channels.newInputStream(ch));
+            byte[] buf = new byte[BUFFER];
+            while (true) {
+                int stream = reply.readByte();
+                int n = reply.readInt();
+                if (stream == EXIT) {
+                    out.flush();
+                    err.flush();
+                    return n;
+                }
+                OutputStream dest = stream == ERR ? err : out;
+                reply.readFully(buf, 0, Math.min(n, buf.length));
+                while (n > 0) {
+                    int k = Math.min(n, buf.length);
+                    dest.write(buf, 0, k);
+                    n -= k;
+                    if (n > 0) {
+                        reply.readFully(buf, 0, Math.min(n, buf.length));
+                    }
+                }
+            }
+        } catch (IOException excp) {
+            try {
+                out.flush();
+                err.write(("Lost the Gitlet daemon: " + excp.getMessage()
+                           + System.lineSeparator()).getBytes());
+                err.flush();
+            } catch (IOException ignored) {
+                /* Nowhere left to report it. */
+            }
+            return 1;
+        }
+    }
+
+    /** Return a channel connected to the daemon listening on SOCKET.
+     *  Throws IOException if none is. */
+    private static SocketChannel connect(File socket) throws IOException {
+        SocketChannel ch = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            ch.connect(UnixDomainSocketAddress.of(socket.toPath()));
+        } catch (IOException excp) {
+            ch.close();
+            throw excp;
+        }
+        return ch;
+    }
+
+    /** Read one request from CH, run it on REPO with its output sent back
+     *  over CH, and send its exit status.  Return true iff the request
+     *  was to stop. */
+    private static boolean handle(Repository repo, SocketChannel ch)
+        throws IOException {
+        DataInputStream request =
+            new DataInputStream(Channels.newInputStream(ch));
+        String[] args = new String[request.readInt()];
+        for (int i = 0; i < args.length; i += 1) {
+            args[i] = request.readUTF();
+        }
+        DataOutputStream reply = new DataOutputStream(
+            new BufferedOutputStream(Channels.newOutputStream(ch), BUFFER));
+        PrintStream out = frames(reply, OUT), err = frames(reply, ERR);
+        int status = 0;
+        boolean stop = false;
+        if (args.length == 2 && args[0].equals("daemon")
+            && args[1].equals("stop")) {
+            stop = true;
+        } else if (args.length > 0 && args[0].equals("daemon")) {
+            out.println("A Gitlet daemon is already running.");
+        } else {
+            try {
+                repo.withOutput(out, err).run(args);
+            } catch (GitletException excp) {
+                String message = excp.getMessage();
+                if (message != null && !message.equals("")) {
+                    out.println(message);
+                }
+            } catch (RuntimeException | Error excp) {
+                err.print("Exception in thread \"main\" ");
+                excp.printStackTrace(err);
+                status = 1;
+            }
+        }
+        out.flush();
+        err.flush();
+        synchronized (reply) {
+            reply.writeByte(EXIT);
+            reply.writeInt(status);
+            reply.flush();
+        }
+        return stop;
+    }
+
+    /** Return a stream whose output is sent over REPLY in frames marked
+     *  STREAM. */
+    private static PrintStream frames(DataOutputStream reply, int stream) {
+        OutputStream framer = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len)
+                throws IOException {
+                synchronized (reply) {
+                    reply.writeByte(stream);
+                    reply.writeInt(len);
+                    reply.write(b, off, len);
+                }
+            }
+        };
+        return new PrintStream(new BufferedOutputStream(framer, BUFFER));
+    }
+}
@@ -0,0 +1,154 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/** Copy/insert deltas between two byte sequences.
+ *
+ *  A delta is the varint length of the target followed by operations:
+ *  INSERT (varint length, then that many literal bytes) or COPY (varint
+ *  offset and varint length of a range of the base).  Matches are found
+ *  by indexing the base in fixed-size blocks and sliding a rolling hash
+ *  over the target, then extending each verified match in both
+ *  directions.
+ *  @author Yu Jia Xu
+ */
+class Delta {
+
+    /** Size of the blocks of the base that are indexed. */
+    private static final int BLOCK = 16;
+    /** Multiplier of the rolling hash. */
+    private static final int PRIME = 31;
+    /** Operation code for literal bytes. */
+    private static final int INSERT = 0;
+    /** Operation code for a range of the base. */
+    private static final int COPY = 1;
+
+    /** Return a delta that rebuilds TARGET from BASE. */
+    static byte[] encode(byte[] base, byte[] target) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            encode(base, target, new DataOutputStream(bytes));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Write a delta that rebuilds TARGET from BASE to OUT. */
+    private static void encode(byte[] base, byte[] target,
+                               DataOutputStream out) throws IOException {
+        Binary.writeVarint(out, target.length);
+        if (base.length < BLOCK || target.length < BLOCK) {
+            insert(out, target, 0, target.length);
+            return;
+        }
+        int size = Integer.highestOneBit(base.length / BLOCK * 2 + 1) * 2;
+        int mask = size - 1;
+        int[] table = new int[size];
+        Arrays.fill(table, -1);
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            table[hash(base, i) & mask] = i;
+        }
+        int top = 1;
+        for (int k = 1; k < BLOCK; k += 1) {
+            top *= PRIME;
+        }
+        int pending = 0, i = 0;
+        int h = hash(target, 0);
+        while (i + BLOCK <= target.length) {
+            int cand = table[h & mask];
+            if (cand >= 0 && sameBlock(base, cand, target, i)) {
+                int len = BLOCK;
+                while (cand + len < base.length && i + len < target.length
+                       && base[cand + len] == target[i + len]) {
+                    len += 1;
+                }
+                int back = 0;
+                while (cand - back > 0 && i - back > pending
+                       && base[cand - back - 1] == target[i - back - 1]) {
+                    back += 1;
+                }
+                insert(out, target, pending, i - back);
+                out.write(COPY);
+                Binary.writeVarint(out, cand - back);
+                Binary.writeVarint(out, len + back);
+                i += len;
+                pending = i;
+                if (i + BLOCK <= target.length) {
+                    h = hash(target, i);
+                }
+                continue;
+            }
+            if (i + BLOCK < target.length) {
+                h = (h - target[i] * top) * PRIME + target[i + BLOCK];
+            }
+            i += 1;
+        }
+        insert(out, target, pending, target.length);
+    }
+
+    /** Return the target rebuilt by applying DELTA to BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(delta);
+            byte[] result = new byte[Binary.length(in)];
+            int at = 0;
+            while (in.hasRemaining()) {
+                int op = in.get();
+                if (op == INSERT) {
+                    int len = Binary.length(in);
+                    in.get(result, at, len);
+                    at += len;
+                } else if (op == COPY) {
+                    int offset = Binary.length(in);
+                    int len = Binary.length(in);
+                    System.arraycopy(base, offset, result, at, len);
+                    at += len;
+                } else {
+                    throw new IOException("bad operation " + op);
+                }
+            }
+            if (at != result.length) {
+                throw new IOException("short target");
+            }
+            return result;
+        } catch (IOException | BufferUnderflowException
+                 | IndexOutOfBoundsException excp) {
+            throw new IllegalArgumentException("corrupt delta");
+        }
+    }
+
+    /** Return the hash of the BLOCK bytes of DATA starting at AT. */
+    private static int hash(byte[] data, int at) {
+        int h = 0;
+        for (int k = 0; k < BLOCK; k += 1) {
+            h = h * PRIME + data[at + k];
+        }
+        return h;
+    }
+
+    /** Return true iff BLOCK bytes of A at I equal those of B at J. */
+    private static boolean sameBlock(byte[] a, int i, byte[] b, int j) {
+        for (int k = 0; k < BLOCK; k += 1) {
+            if (a[i + k] != b[j + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Write an INSERT of DATA[FROM .. TO) to OUT, if it is not empty. */
+    private static void insert(DataOutputStream out, byte[] data,
+                               int from, int to) throws IOException {
+        if (to > from) {
+            out.write(INSERT);
+            Binary.writeVarint(out, to - from);
+            out.write(data, from, to - from);
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/** Line-by-line differences between two versions of a file, found by
+ *  Myers's O(ND) difference algorithm in its linear-space form.  Each
+ *  version is streamed three times: once to number its lines, giving
+ *  lines with the same 64-bit hash the same number, once to check that
+ *  the lines the edit script keeps really are equal, and once more to
+ *  print the lines around each change.  The numbers come from a Table
+ *  shared by both versions that holds only the hash of each distinct
+ *  line, so memory grows with the number of lines but not with their
+ *  contents, and no line is read into memory whole.  Should two lines
+ *  kept as equal differ, their hashes collided, and both versions are
+ *  numbered again with another hash.  Each step searches for the
+ *  middle snake of a shortest edit script from both ends at once and
+ *  splits the problem there; a stack of the ranges left to compare
+ *  takes the place of recursion.
+ *  @author Yu Jia Xu
+ */
+class Diff {
+
+    /** Lines of context printed around each change. */
+    static final int CONTEXT = 3;
+
+    /** Size of the read buffers. */
+    private static final int BUFFER = 1 << 16;
+    /** Offset basis and prime of the 64-bit FNV-1a hash. */
+    private static final long FNV_BASIS = 0xcbf29ce484222325L,
+        FNV_PRIME = 0x100000001b3L;
+    /** Mask of the low byte. */
+    private static final int BYTE = 0xff;
+    /** Step between the offset bases tried after a hash collision. */
+    private static final long REHASH = 0x9E3779B97F4A7C15L;
+
+    /** The distinct lines of the versions of a file being compared, each
+     *  numbered the first time it is read.  Lines are found by their
+     *  64-bit hash in an open-addressed table. */
+    static class Table {
+        /** Initial number of slots; always a power of two. */
+        private static final int INITIAL_SLOTS = 64;
+        /** Marker for an empty slot. */
+        private static final int EMPTY = -1;
+
+        /** Offset basis of the hash of the lines. */
+        private final long basis;
+        /** Slot array holding a line number, or EMPTY. */
+        private int[] slots = new int[INITIAL_SLOTS];
+        /** Hash of each line. */
+        private long[] hashes = new long[INITIAL_SLOTS / 2];
+        /** Number of distinct lines. */
+        private int size;
+
+        /** An empty table of lines hashed from the offset basis BASIS. */
+        Table(long basis) {
+            this.basis = basis;
+            Arrays.fill(slots, EMPTY);
+        }
+
+        /** An empty table of lines hashed with FNV-1a. */
+        Table() {
+            this(FNV_BASIS);
+        }
+
+        /** Return the number of distinct lines. */
+        int size() {
+            return size;
+        }
+
+        /** Return the number of the line that hashes to HASH, numbering
+         *  it if it is new. */
+        int intern(long hash) {
+            int mask = slots.length - 1;
+            int s = slot(hash, mask);
+            for (; slots[s] != EMPTY; s = (s + 1) & mask) {
+                if (hashes[slots[s]] == hash) {
+                    return slots[s];
+                }
+            }
+            if (size == hashes.length) {
+                hashes = Arrays.copyOf(hashes, 2 * size);
+            }
+            hashes[size] = hash;
+            slots[s] = size;
+            size += 1;
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+            return size - 1;
+        }
+
+        /** Return the home slot of HASH in a table with mask MASK. */
+        private static int slot(long hash, int mask) {
+            int h = (int) (hash ^ (hash >>> 32));
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        /** Double the slot array and re-insert every line. */
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            Arrays.fill(slots, EMPTY);
+            int mask = slots.length - 1;
+            for (int i = 0; i < size; i += 1) {
+                int s = slot(hashes[i], mask);
+                while (slots[s] != EMPTY) {
+                    s = (s + 1) & mask;
+                }
+                slots[s] = i;
+            }
+        }
+    }
+
+    /** The numbered lines of one version of a file. */
+    static class Lines {
+        /** Number of each line, with the newline ending it, if any. */
+        private int[] numbers = new int[16];
+        /** Number of lines. */
+        private int size;
+        /** True iff the file holds a NUL byte, and so is not text. */
+        private boolean binary;
+
+        /** Return the number of lines. */
+        int size() {
+            return size;
+        }
+
+        /** Return true iff the file is not text. */
+        boolean binary() {
+            return binary;
+        }
+
+        /** Add a line numbered NUMBER. */
+        private void add(int number) {
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, 2 * size);
+            }
+            numbers[size] = number;
+            size += 1;
+        }
+    }
+
+    /** Return the lines read from IN, which is closed, numbered in
+     *  TABLE. */
+    static Lines read(InputStream in, Table table) {
+        Lines lines = new Lines();
+        try (InputStream input = in) {
+            byte[] buf = new byte[BUFFER];
+            boolean partial = false;
+            long hash = table.basis;
+            for (int n = input.read(buf); n >= 0; n = input.read(buf)) {
+                for (int i = 0; i < n; i += 1) {
+                    hash = (hash ^ (buf[i] & BYTE)) * FNV_PRIME;
+                    if (buf[i] == '\n') {
+                        lines.add(table.intern(hash));
+                        hash = table.basis;
+                    } else if (buf[i] == 0) {
+                        lines.binary = true;
+                    }
+                }
+                partial = n > 0 && buf[n - 1] != '\n'
+                    || n == 0 && partial;
+            }
+            if (partial) {
+                lines.add(table.intern(hash));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return lines;
+    }
+
+    /** Return true iff each line that EDITS, which turn the text BEFORE
+     *  opens into the one AFTER opens, keep is equal in both. */
+    static boolean verify(List<int[]> edits, Supplier<InputStream> before,
+                          Supplier<InputStream> after) {
+        try (LineReader ra = new LineReader(before);
+             LineReader rb = new LineReader(after)) {
+            for (int[] edit : edits) {
+                if (!ra.sameUntil(edit[0], rb)) {
+                    return false;
+                }
+                ra.skipTo(edit[1]);
+                rb.skipTo(edit[3]);
+            }
+            return ra.sameUntil(Integer.MAX_VALUE, rb);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return a shortest edit script turning A into B, as edits {A0, A1,
+     *  B0, B1} that each replace lines [A0, A1) of A with lines [B0, B1)
+     *  of B, in order and with at least one equal line between two. */
+    static List<int[]> edits(Lines a, Lines b) {
+        List<int[]> result = new ArrayList<>();
+        int[] forward = null, reverse = null;
+        ArrayDeque<int[]> ranges = new ArrayDeque<>();
+        ranges.push(new int[] {0, a.size, 0, b.size});
+        while (!ranges.isEmpty()) {
+            int[] r = ranges.pop();
+            int a0 = r[0], a1 = r[1], b0 = r[2], b1 = r[3];
+            while (a0 < a1 && b0 < b1 && a.numbers[a0] == b.numbers[b0]) {
+                a0 += 1;
+                b0 += 1;
+            }
+            while (a0 < a1 && b0 < b1
+                   && a.numbers[a1 - 1] == b.numbers[b1 - 1]) {
+                a1 -= 1;
+                b1 -= 1;
+            }
+            if (a0 == a1 && b0 == b1) {
+                continue;
+            }
+            int[] split = null;
+            if (a0 < a1 && b0 < b1) {
+                if (forward == null) {
+                    forward = new int[a1 - a0 + b1 - b0 + 4];
+                    reverse = new int[forward.length];
+                }
+                split = split(a.numbers, a0, a1, b.numbers, b0, b1, forward,
+                              reverse);
+            }
+            if (split == null) {
+                int[] last = result.isEmpty() ? null
+                    : result.get(result.size() - 1);
+                if (last != null && last[1] == a0 && last[3] == b0) {
+                    last[1] = a1;
+                    last[3] = b1;
+                } else {
+                    result.add(new int[] {a0, a1, b0, b1});
+                }
+            } else {
+                ranges.push(new int[] {split[0], a1, split[1], b1});
+                ranges.push(new int[] {a0, split[0], b0, split[1]});
+            }
+        }
+        return result;
+    }
+
+    /** Return a point {X, Y} on a shortest path from (A0, B0) to (A1, B1)
+     *  through the edit graph of lines A and B, both ranges being
+     *  non-empty with unequal first and last lines, such that at most
+     *  half the edits on the path come before it and at most half after.
+     *  Returns null if the ranges have no line in common.  FORWARD and
+     *  REVERSE hold the furthest reaching paths from each end by
+     *  diagonal, and must have room for every diagonal. */
+    private static int[] split(int[] a, int a0, int a1, int[] b, int b0,
+                               int b1, int[] forward, int[] reverse) {
+        int n = a1 - a0, m = b1 - b0, delta = n - m;
+        int max = (n + m + 1) / 2, mid = max + 1, length = 2 * mid;
+        Arrays.fill(forward, 0, length, -1);
+        Arrays.fill(reverse, 0, length, -1);
+        forward[mid + 1] = 0;
+        reverse[mid + 1] = 0;
+        boolean odd = (delta & 1) != 0;
+        int fstart = 0, fend = 0, rstart = 0, rend = 0;
+        for (int d = 0; d < max; d += 1) {
+            for (int k = -d + fstart; k <= d - fend; k += 2) {
+                int i = mid + k;
+                int x = k == -d || k != d && forward[i - 1] < forward[i + 1]
+                    ? forward[i + 1] : forward[i - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[a0 + x] == b[b0 + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                forward[i] = x;
+                if (x > n) {
+                    fend += 2;
+                } else if (y > m) {
+                    fstart += 2;
+                } else if (odd) {
+                    int j = mid + delta - k;
+                    if (j >= 0 && j < length && reverse[j] != -1
+                        && x >= n - reverse[j]) {
+                        return new int[] {a0 + x, b0 + y};
+                    }
+                }
+            }
+            for (int k = -d + rstart; k <= d - rend; k += 2) {
+                int j = mid + k;
+                int x = k == -d || k != d && reverse[j - 1] < reverse[j + 1]
+                    ? reverse[j + 1] : reverse[j - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m
+                       && a[a1 - 1 - x] == b[b1 - 1 - y]) {
+                    x += 1;
+                    y += 1;
+                }
+                reverse[j] = x;
+                if (x > n) {
+                    rend += 2;
+                } else if (y > m) {
+                    rstart += 2;
+                } else if (!odd) {
+                    int i = mid + delta - k;
+                    if (i >= 0 && i < length && forward[i] != -1
+                        && forward[i] >= n - x) {
+                        int fx = forward[i];
+                        return new int[] {a0 + fx, b0 + fx - (i - mid)};
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Print to OUT how the file NAME changed from BEFORE to AFTER, in
+     *  unified format.  Either is null where the file is missing;
+     *  otherwise each opens a new stream of that version's contents.
+     *  Prints nothing if the versions do not differ. */
+    static void print(String name, Supplier<InputStream> before,
+                      Supplier<InputStream> after, PrintStream out) {
+        Lines a, b;
+        List<int[]> edits;
+        for (long basis = FNV_BASIS;; basis += REHASH) {
+            Table table = new Table(basis);
+            a = before == null ? new Lines() : read(before.get(), table);
+            b = after == null ? new Lines() : read(after.get(), table);
+            edits = edits(a, b);
+            if (before == null || after == null
+                || (a.binary || b.binary) && !edits.isEmpty()
+                || verify(edits, before, after)) {
+                break;
+            }
+        }
+        if (edits.isEmpty() && (before == null) == (after == null)) {
+            return;
+        }
+        String from = before == null ? "/dev/null" : "a/" + name;
+        String to = after == null ? "/dev/null" : "b/" + name;
+        if (a.binary || b.binary) {
+            out.println("Binary files " + from + " and " + to + " differ");
+            return;
+        }
+        out.println("--- " + from);
+        out.println("+++ " + to);
+        printHunks(edits, a.size, before, after, out);
+    }
+
+    /** Print to OUT the hunks of EDITS, which turn a text of SIZE lines
+     *  into another, reading the lines printed from BEFORE and AFTER as
+     *  for print. */
+    static void printHunks(List<int[]> edits, int size,
+                           Supplier<InputStream> before,
+                           Supplier<InputStream> after, PrintStream out) {
+        try (LineReader ra = new LineReader(before);
+             LineReader rb = new LineReader(after)) {
+            for (int i = 0; i < edits.size();) {
+                int j = i;
+                while (j + 1 < edits.size()
+                       && edits.get(j + 1)[0] - edits.get(j)[1]
+                          <= 2 * CONTEXT) {
+                    j += 1;
+                }
+                int[] first = edits.get(i), last = edits.get(j);
+                int start = Math.max(0, first[0] - CONTEXT);
+                int end = Math.min(size, last[1] + CONTEXT);
+                out.println("@@ -" + range(start, end) + " +"
+                            + range(first[2] - (first[0] - start),
+                                    last[3] + (end - last[1])) + " @@");
+                ra.skipTo(start);
+                for (int e = i; e <= j; e += 1) {
+                    int[] edit = edits.get(e);
+                    ra.copyTo(edit[0], ' ', out);
+                    ra.copyTo(edit[1], '-', out);
+                    rb.skipTo(edit[2]);
+                    rb.copyTo(edit[3], '+', out);
+                }
+                ra.copyTo(end, ' ', out);
+                i = j + 1;
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the lines [START, END) as a hunk header gives them. */
+    private static String range(int start, int end) {
+        if (end - start == 1) {
+            return Integer.toString(end);
+        }
+        return (start == end ? start : start + 1) + "," + (end - start);
+    }
+
+    /** A reader of the lines of one version of a file, in order. */
+    private static class LineReader implements AutoCloseable {
+        /** The contents, or null for a missing file. */
+        private final InputStream in;
+        /** Contents read ahead. */
+        private final byte[] buf = new byte[BUFFER];
+        /** Start and end of the contents in BUF not yet taken. */
+        private int pos, limit;
+        /** Index of the next line. */
+        private int line;
+
+        /** A reader of the lines of the stream SOURCE opens, or of no
+         *  lines if SOURCE is null. */
+        LineReader(Supplier<InputStream> source) {
+            in = source == null ? null : source.get();
+        }
+
+        /** Return true iff each line before line K, or before the end of
+         *  the text if that comes first, equals the next line of THAT,
+         *  reading as far as the first that does not. */
+        boolean sameUntil(int k, LineReader that) throws IOException {
+            while (line < k) {
+                int x = read(), y = that.read();
+                if (x < 0 && y < 0) {
+                    return true;
+                }
+                line += 1;
+                that.line += 1;
+                while (x == y && x >= 0 && x != '\n') {
+                    x = read();
+                    y = that.read();
+                }
+                if (x != y) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Return the next byte, or -1 at the end of the text. */
+        private int read() throws IOException {
+            if (pos == limit) {
+                limit = in == null ? -1 : in.read(buf);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            pos += 1;
+            return buf[pos - 1] & BYTE;
+        }
+
+        /** Skip ahead to line K. */
+        void skipTo(int k) throws IOException {
+            while (line < k) {
+                next(null);
+            }
+        }
+
+        /** Print each line before line K to OUT, after PREFIX. */
+        void copyTo(int k, char prefix, PrintStream out) throws IOException {
+            while (line < k) {
+                out.print(prefix);
+                boolean newline = next(out);
+                out.println();
+                if (!newline) {
+                    out.println("\\ No newline at end of file");
+                }
+            }
+        }
+
+        /** Write the next line to OUT, without its newline, or skip it if
+         *  OUT is null.  Returns true iff a newline ended it. */
+        private boolean next(PrintStream out) throws IOException {
+            line += 1;
+            while (true) {
+                if (pos == limit) {
+                    limit = in.read(buf);
+                    pos = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        return false;
+                    }
+                }
+                int start = pos;
+                while (pos < limit && buf[pos] != '\n') {
+                    pos += 1;
+                }
+                if (out != null) {
+                    out.write(buf, start, pos - start);
+                }
+                if (pos < limit) {
+                    pos += 1;
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package gitlet;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/** An immutable map from paths to blob ids, sorted by path and held in
+ *  two arrays: the paths, interned so that every commit tracking a file
+ *  shares its name, and the ids, each packed as its UID_BYTES raw bytes,
+ *  so every id must be a full SHA-1.  Two maps with the same entries
+ *  hold them in the same order however they were built, so they can be
+ *  compared entry by entry in one pass.
+ *  @author Yu Jia Xu
+ */
+class FileMap extends AbstractMap<String, String> {
+
+    /** The map with no entries. */
+    static final FileMap EMPTY = new FileMap(new String[0], new byte[0]);
+
+    /** The paths, in lexicographic order. */
+    private final String[] paths;
+    /** The id of each path, as raw bytes, in the order of PATHS. */
+    private final byte[] ids;
+
+    /** A map from each of PATHS to the id at the same position in IDS. */
+    private FileMap(String[] paths, byte[] ids) {
+        this.paths = paths;
+        this.ids = ids;
+    }
+
+    /** Return a FileMap with the entries of MAP.  Throws
+     *  IllegalArgumentException if an id is not a full SHA-1 in
+     *  lower-case hex. */
+    static FileMap of(Map<String, String> map) {
+        if (map instanceof FileMap) {
+            return (FileMap) map;
+        } else if (map.isEmpty()) {
+            return EMPTY;
+        }
+        String[] paths = map.keySet().toArray(new String[0]);
+        Arrays.sort(paths);
+        byte[] ids = new byte[paths.length * Utils.UID_BYTES];
+        for (int i = 0; i < paths.length; i += 1) {
+            String id = map.get(paths[i]);
+            paths[i] = paths[i].intern();
+            if (id == null || !Binary.isSha1(id)) {
+                throw new IllegalArgumentException("bad blob id for "
+                                                   + paths[i] + ": " + id);
+            }
+            System.arraycopy(Utils.hexToBytes(id), 0, ids,
+                             i * Utils.UID_BYTES, Utils.UID_BYTES);
+        }
+        return new FileMap(paths, ids);
+    }
+
+    /** Return the path of entry K. */
+    String path(int k) {
+        return paths[k];
+    }
+
+    /** Return the id of entry K. */
+    String id(int k) {
+        return Utils.bytesToHex(ids, k * Utils.UID_BYTES, Utils.UID_BYTES);
+    }
+
+    /** Return the entry of PATH, or -1 if there is none. */
+    int find(Object path) {
+        if (!(path instanceof String)) {
+            return -1;
+        }
+        return Math.max(-1, Arrays.binarySearch(paths, path));
+    }
+
+    @Override
+    public int size() {
+        return paths.length;
+    }
+
+    @Override
+    public String get(Object path) {
+        int k = find(path);
+        return k < 0 ? null : id(k);
+    }
+
+    @Override
+    public boolean containsKey(Object path) {
+        return find(path) >= 0;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return Arrays.asList(paths).iterator();
+            }
+
+            @Override
+            public int size() {
+                return paths.length;
+            }
+
+            @Override
+            public boolean contains(Object path) {
+                return find(path) >= 0;
+            }
+        };
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return new AbstractSet<Map.Entry<String, String>>() {
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                return new Iterator<Map.Entry<String, String>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < paths.length;
+                    }
+
+                    @Override
+                    public Map.Entry<String, String> next() {
+                        if (next == paths.length) {
+                            throw new NoSuchElementException();
+                        }
+                        next += 1;
+                        return new AbstractMap.SimpleImmutableEntry<>(
+                            paths[next - 1], id(next - 1));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return paths.length;
+            }
+        };
+    }
+
+    /** Return each path whose id differs between BEFORE and AFTER, in
+     *  path order, mapped to its id in each or null where it is
+     *  missing: added paths have no id before, removed ones none after,
+     *  and modified ones both. */
+    static LinkedHashMap<String, String[]> diff(FileMap before,
+                                                FileMap after) {
+        LinkedHashMap<String, String[]> changes = new LinkedHashMap<>();
+        diff(before, after, "", changes);
+        return changes;
+    }
+
+    /** Add to CHANGES, as diff returns them, each path that differs
+     *  between BEFORE and AFTER with PREFIX before it.  Both maps are
+     *  walked once, side by side, and ids are compared as bytes. */
+    static void diff(FileMap before, FileMap after, String prefix,
+                     Map<String, String[]> changes) {
+        int i = 0, j = 0;
+        while (i < before.paths.length || j < after.paths.length) {
+            int c;
+            if (i == before.paths.length) {
+                c = 1;
+            } else if (j == after.paths.length) {
+                c = -1;
+            } else if (before.paths[i] == after.paths[j]) {
+                c = 0;
+            } else {
+                c = before.paths[i].compareTo(after.paths[j]);
+            }
+            if (c < 0) {
+                changes.put(prefix + before.paths[i],
+                            new String[] {before.id(i), null});
+                i += 1;
+            } else if (c > 0) {
+                changes.put(prefix + after.paths[j],
+                            new String[] {null, after.id(j)});
+                j += 1;
+            } else {
+                if (!sameId(before, i, after, j)) {
+                    changes.put(prefix + before.paths[i],
+                                new String[] {before.id(i), after.id(j)});
+                }
+                i += 1;
+                j += 1;
+            }
+        }
+    }
+
+    /** Return true iff entry I of A and entry J of B have the same id. */
+    private static boolean sameId(FileMap a, int i, FileMap b, int j) {
+        int n = Utils.UID_BYTES;
+        return Arrays.equals(a.ids, i * n, i * n + n, b.ids, j * n, j * n + n);
+    }
+}
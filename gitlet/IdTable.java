@@ -0,0 +1,87 @@
+package gitlet;
+
+import java.util.Arrays;
+
+/** An open-addressed table assigning dense int indices to object ids.
+ *  Lookups probe a flat int array instead of chasing HashMap nodes, and
+ *  callers keep per-id data in plain parallel arrays keyed by the index.
+ *  @author Yu Jia Xu
+ */
+class IdTable {
+
+    /** Initial number of slots; always a power of two. */
+    private static final int INITIAL_SLOTS = 64;
+
+    /** Marker for an empty slot. */
+    private static final int EMPTY = -1;
+
+    /** Odd multiplier used to spread String hash codes across slots. */
+    private static final int SPREAD = 0x9E3779B9;
+
+    /** Slot array holding an index into IDS, or EMPTY. */
+    private int[] slots;
+
+    /** Ids in the order they were added. */
+    private String[] ids;
+
+    /** Number of ids added. */
+    private int size;
+
+    /** An empty table. */
+    IdTable() {
+        slots = new int[INITIAL_SLOTS];
+        Arrays.fill(slots, EMPTY);
+        ids = new String[INITIAL_SLOTS / 2];
+    }
+
+    /** Return the number of ids in this table. */
+    int size() {
+        return size;
+    }
+
+    /** Return the id with index INDEX. */
+    String get(int index) {
+        return ids[index];
+    }
+
+    /** Add ID if it is not present and return its index. */
+    int add(String id) {
+        int mask = slots.length - 1;
+        int s = slot(id, mask);
+        for (; slots[s] != EMPTY; s = (s + 1) & mask) {
+            if (ids[slots[s]].equals(id)) {
+                return slots[s];
+            }
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        ids[size] = id;
+        slots[s] = size;
+        size += 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    /** Return the home slot of ID in a table with mask MASK. */
+    private static int slot(String id, int mask) {
+        int h = id.hashCode() * SPREAD;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /** Double the slot array and re-insert every id. */
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        Arrays.fill(slots, EMPTY);
+        int mask = slots.length - 1;
+        for (int i = 0; i < size; i += 1) {
+            int s = slot(ids[i], mask);
+            while (slots[s] != EMPTY) {
+                s = (s + 1) & mask;
+            }
+            slots[s] = i;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package gitlet;
+
+import java.util.Arrays;
+import java.util.List;
+
+/** Merge-base (split point) computation over the commit DAG.
+ *
+ *  Every head paints its ancestors with its own bit; all frontiers advance
+ *  through one shared work queue, and a commit is re-queued only when it
+ *  gains a bit it did not have, so each commit is loaded at most once and
+ *  painted at most once per head.  When every commit's generation number
+ *  is known, the queue hands out commits highest generation first, so a
+ *  commit is taken only once all of its painted children have been, and
+ *  the walk stops as soon as every commit still queued carries every bit:
+ *  what lies below them is common history that no nearer base can hide
+ *  in, so merges cost in proportion to the history since the split point
+ *  rather than to the whole history.  A breadth-first walk from the first
+ *  head then returns the nearest commit carrying every bit.  Parent lists
+ *  are memoized, so one MergeBase may answer several queries cheaply, and
+ *  each commit's marks are stamped with the query that set them, so a
+ *  query never clears the marks of commits it does not reach.
+ *  @author Yu Jia Xu
+ */
+class MergeBase {
+
+    /** Largest number of heads a single query may combine. */
+    static final int MAX_HEADS = 63;
+
+    /** Initial capacity of the per-commit arrays. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** Generation given to commits whose generation is not known. */
+    private static final int UNKNOWN = Integer.MAX_VALUE;
+
+    /** Source of the parent ids of a commit id. */
+    private final Utils.Function<String, String[]> parentsOf;
+
+    /** Source of the generation number of a commit id, negative if it is
+     *  not known, or null. */
+    private final Utils.Function<String, Integer> generationOf;
+
+    /** Dense indices of every commit seen so far. */
+    private final IdTable table = new IdTable();
+
+    /** Parent indices of each commit, or null if not yet loaded. */
+    private int[][] parents = new int[INITIAL_CAPACITY][];
+
+    /** Generation number of each commit, or UNKNOWN. */
+    private int[] generations = new int[INITIAL_CAPACITY];
+
+    /** Bit mask of the heads that reach each commit, where STAMP is the
+     *  current query. */
+    private long[] marks = new long[INITIAL_CAPACITY];
+
+    /** The query that last marked each commit. */
+    private int[] stamp = new int[INITIAL_CAPACITY];
+
+    /** The query that queued each commit, while it is queued. */
+    private int[] seen = new int[INITIAL_CAPACITY];
+
+    /** The query whose search for the nearest base last visited each
+     *  commit. */
+    private int[] visited = new int[INITIAL_CAPACITY];
+
+    /** The current query, counting from 1. */
+    private int query;
+
+    /** A merge-base engine that finds parents through PARENTSOF, and
+     *  paints every ancestor of the heads. */
+    MergeBase(Utils.Function<String, String[]> parentsOf) {
+        this(parentsOf, null);
+    }
+
+    /** A merge-base engine that finds parents through PARENTSOF and
+     *  generation numbers through GENERATIONOF. */
+    MergeBase(Utils.Function<String, String[]> parentsOf,
+              Utils.Function<String, Integer> generationOf) {
+        this.parentsOf = parentsOf;
+        this.generationOf = generationOf;
+    }
+
+    /** Return a parent lookup that reads commits from COMMITS. */
+    static Utils.Function<String, String[]> commitParents(
+        final ObjectStore commits) {
+        return new Utils.Function<String, String[]>() {
+            @Override
+            String[] apply(String id) {
+                return Commit.fromFile(commits, id).parents();
+            }
+        };
+    }
+
+    /** Return the split point of HEAD and OTHER: the common ancestor
+     *  closest to HEAD, or null if they share no history. */
+    String find(String head, String other) {
+        return find(Arrays.asList(head, other));
+    }
+
+    /** Return the common ancestor of all of HEADS that is closest to the
+     *  first of them, or null if there is none. */
+    String find(List<String> heads) {
+        if (heads.isEmpty() || heads.size() > MAX_HEADS) {
+            throw new IllegalArgumentException("bad number of heads");
+        }
+        query += 1;
+        long all = (1L << heads.size()) - 1;
+        int[] start = new int[heads.size()];
+        for (int i = 0; i < start.length; i += 1) {
+            start[i] = node(heads.get(i));
+            mark(start[i], 1L << i);
+        }
+        paint(start, all);
+        return nearest(start[0], all);
+    }
+
+    /** Propagate the marks of START to their ancestors, until every
+     *  commit still queued is marked ALL if generations allow. */
+    private void paint(int[] start, long all) {
+        IntHeap work = new IntHeap();
+        boolean exact = generationOf != null;
+        int active = 0;
+        for (int s : start) {
+            if (seen[s] != query) {
+                seen[s] = query;
+                work.add(s);
+                exact &= generations[s] != UNKNOWN;
+                active += marks[s] == all ? 0 : 1;
+            }
+        }
+        while (!work.isEmpty() && (active > 0 || !exact)) {
+            int x = work.remove();
+            seen[x] = 0;
+            long m = marks[x];
+            active -= m == all ? 0 : 1;
+            for (int p : parents(x)) {
+                boolean queued = seen[p] == query;
+                if (!mark(p, m)) {
+                    continue;
+                } else if (!queued) {
+                    seen[p] = query;
+                    work.add(p);
+                    exact &= generations[p] != UNKNOWN;
+                    active += marks[p] == all ? 0 : 1;
+                } else if (marks[p] == all) {
+                    active -= 1;
+                }
+            }
+        }
+    }
+
+    /** Add the heads in BITS to the marks of commit X and return true
+     *  iff it gained any. */
+    private boolean mark(int x, long bits) {
+        if (stamp[x] != query) {
+            stamp[x] = query;
+            marks[x] = 0;
+        }
+        long gained = bits & ~marks[x];
+        marks[x] |= gained;
+        return gained != 0;
+    }
+
+    /** Return the id of the commit nearest to FROM whose mark is ALL, or
+     *  null.  Only commits already painted are visited. */
+    private String nearest(int from, long all) {
+        IntQueue work = new IntQueue();
+        visited[from] = query;
+        work.add(from);
+        while (!work.isEmpty()) {
+            int x = work.remove();
+            if (stamp[x] == query && marks[x] == all) {
+                return table.get(x);
+            }
+            for (int p : parents(x)) {
+                if (visited[p] != query) {
+                    visited[p] = query;
+                    work.add(p);
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Return the index of ID, adding it if needed. */
+    private int node(String id) {
+        int size = table.size();
+        int index = table.add(id);
+        if (index == marks.length) {
+            marks = Arrays.copyOf(marks, index * 2);
+            stamp = Arrays.copyOf(stamp, index * 2);
+            seen = Arrays.copyOf(seen, index * 2);
+            visited = Arrays.copyOf(visited, index * 2);
+            parents = Arrays.copyOf(parents, index * 2);
+            generations = Arrays.copyOf(generations, index * 2);
+        }
+        if (index == size) {
+            Integer g = generationOf == null ? null : generationOf.apply(id);
+            generations[index] = g == null || g < 0 ? UNKNOWN : g;
+        }
+        return index;
+    }
+
+    /** Return the parent indices of commit X, loading them on first use. */
+    private int[] parents(int x) {
+        if (parents[x] == null) {
+            String[] ids = parentsOf.apply(table.get(x));
+            int[] result = new int[ids.length];
+            for (int i = 0; i < ids.length; i += 1) {
+                result[i] = node(ids[i]);
+            }
+            parents[x] = result;
+        }
+        return parents[x];
+    }
+
+    /** A growable queue of commit indices, highest generation first. */
+    private class IntHeap {
+        /** Binary heap. */
+        private int[] items = new int[INITIAL_CAPACITY];
+        /** Number of items. */
+        private int count;
+
+        /** Return true iff the heap is empty. */
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        /** Add X. */
+        void add(int x) {
+            if (count == items.length) {
+                items = Arrays.copyOf(items, count * 2);
+            }
+            int i = count;
+            count += 1;
+            while (i > 0 && generations[items[(i - 1) / 2]]
+                   < generations[x]) {
+                items[i] = items[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            items[i] = x;
+        }
+
+        /** Remove and return an item of highest generation. */
+        int remove() {
+            int top = items[0];
+            count -= 1;
+            int x = items[count], i = 0;
+            while (2 * i + 1 < count) {
+                int c = 2 * i + 1;
+                if (c + 1 < count
+                    && generations[items[c + 1]] > generations[items[c]]) {
+                    c += 1;
+                }
+                if (generations[items[c]] <= generations[x]) {
+                    break;
+                }
+                items[i] = items[c];
+                i = c;
+            }
+            items[i] = x;
+            return top;
+        }
+    }
+
+    /** A growable FIFO queue of ints. */
+    private static class IntQueue {
+        /** Ring buffer. */
+        private int[] items = new int[INITIAL_CAPACITY];
+        /** Index of the first item. */
+        private int first;
+        /** Number of items. */
+        private int count;
+
+        /** Return true iff the queue is empty. */
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        /** Append X. */
+        void add(int x) {
+            if (count == items.length) {
+                int[] bigger = new int[items.length * 2];
+                for (int i = 0; i < count; i += 1) {
+                    bigger[i] = items[(first + i) % items.length];
+                }
+                items = bigger;
+                first = 0;
+            }
+            items[(first + count) % items.length] = x;
+            count += 1;
+        }
+
+        /** Remove and return the first item. */
+        int remove() {
+            int x = items[first];
+            first = (first + 1) % items.length;
+            count -= 1;
+            return x;
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/** An index of commit messages, so that find need not read every commit.
+ *
+ *  Each commit's id and message are appended to a log as it is made.  A
+ *  separate index over the log holds two hash tables of log offsets: one
+ *  bucketed by whole message, for exact searches, and one by each run of
+ *  GRAM characters within the words of each message, for substring
+ *  searches.  A search word shorter than GRAM has no run to look up, so
+ *  a search made only of such words scans the log, which holds messages
+ *  and ids only and so is still far cheaper than reading every commit.
+ *  Records appended since the index was
+ *  built are scanned directly, and the commit that takes them past
+ *  MAX_TAIL bytes rebuilds the index, so a search reads one bucket and at
+ *  most MAX_TAIL bytes of log however long the history grows.  A record
+ *  torn by a crash while it was appended is cut from the log before the
+ *  next one is appended or searched.
+ *
+ *  The log is LOG_MAGIC and LOG_VERSION, then for each commit its raw id
+ *  and its message as written by Binary.  The index is INDEX_MAGIC and
+ *  INDEX_VERSION,
+ *  the length of log it covers, the two bucket counts and posting counts,
+ *  then for each table the start of every bucket's postings followed by
+ *  the postings themselves, as log offsets.
+ *  @author Yu Jia Xu
+ */
+class MessageIndex {
+
+    /** Leading bytes of the log, "GMSG". */
+    private static final int LOG_MAGIC = 0x474d5347;
+    /** Leading bytes of the index, "GMIX". */
+    private static final int INDEX_MAGIC = 0x474d4958;
+    /** Format version of the log. */
+    private static final int LOG_VERSION = 1;
+    /** Format version of the index, whose word table holds runs of GRAM
+     *  characters since version 2. */
+    private static final int INDEX_VERSION = 2;
+    /** Length of the runs of characters in the word table. */
+    private static final int GRAM = 3;
+    /** Size of the log header in bytes. */
+    private static final int LOG_HEADER = 2 * Integer.BYTES;
+    /** Size of the index header in bytes. */
+    private static final int INDEX_HEADER = 6 * Integer.BYTES + Long.BYTES;
+    /** Most bytes of log left unindexed after a commit. */
+    private static final int MAX_TAIL = 1 << 16;
+    /** Odd multiplier used to spread String hash codes across buckets. */
+    private static final int SPREAD = 0x9E3779B9;
+
+    /** Mapped contents of the log. */
+    private final ByteBuffer log;
+    /** Mapped contents of the index. */
+    private final ByteBuffer index;
+    /** Length of log the index covers. */
+    private final long covered;
+    /** Number of message buckets, a power of two. */
+    private final int messageBuckets;
+    /** Number of word buckets, a power of two. */
+    private final int wordBuckets;
+    /** Offset of the message buckets' starts in the index. */
+    private final int messageStarts;
+    /** Offset of the word buckets' starts in the index. */
+    private final int wordStarts;
+    /** Offset of the message postings in the index. */
+    private final int messagePostings;
+    /** Offset of the word postings in the index. */
+    private final int wordPostings;
+
+    /** An index over LOG held in INDEX. */
+    private MessageIndex(ByteBuffer log, ByteBuffer index) {
+        this.log = log;
+        this.index = index;
+        if (log.getInt(0) != LOG_MAGIC
+            || log.getInt(Integer.BYTES) != LOG_VERSION
+            || index.getInt(0) != INDEX_MAGIC
+            || index.getInt(Integer.BYTES) != INDEX_VERSION) {
+            throw new IllegalArgumentException("bad message index");
+        }
+        covered = index.getLong(2 * Integer.BYTES);
+        messageBuckets = index.getInt(INDEX_HEADER - 4 * Integer.BYTES);
+        wordBuckets = index.getInt(INDEX_HEADER - 3 * Integer.BYTES);
+        int messageCount = index.getInt(INDEX_HEADER - 2 * Integer.BYTES);
+        messageStarts = INDEX_HEADER;
+        wordStarts = messageStarts + (messageBuckets + 1) * Integer.BYTES;
+        messagePostings = wordStarts + (wordBuckets + 1) * Integer.BYTES;
+        wordPostings = messagePostings + messageCount * Long.BYTES;
+    }
+
+    /** Return the index of the messages logged in LOG, kept in INDEX.  If
+     *  LOG is missing it is first written from every commit in COMMITS,
+     *  and INDEX is rebuilt if it is missing or too far behind LOG. */
+    static MessageIndex open(File log, File index, ObjectStore commits) {
+        if (!log.isFile()) {
+            rebuildLog(log, commits);
+            index.delete();
+        }
+        ByteBuffer logbuf = trim(log, covered(index, log.length()));
+        long covered = covered(index, logbuf.limit());
+        if (covered < 0 || logbuf.limit() - covered > MAX_TAIL) {
+            build(logbuf, index);
+        }
+        return new MessageIndex(logbuf, map(index));
+    }
+
+    /** Return true iff LOG and INDEX are as open leaves them, so that it
+     *  would write neither. */
+    static boolean current(File log, File index) {
+        if (!log.isFile()) {
+            return false;
+        }
+        long covered = covered(index, log.length());
+        if (covered < 0 || log.length() - covered > MAX_TAIL) {
+            return false;
+        }
+        ByteBuffer buf = map(log);
+        return whole(buf, covered) == buf.limit();
+    }
+
+    /** Append commit ID with message MESSAGE to LOG, if LOG has been
+     *  started, and rebuild INDEX if that leaves it missing or more than
+     *  MAX_TAIL bytes behind LOG.  If LOG has not been started, it will
+     *  include ID once it is written. */
+    static void append(File log, File index, String id, String message) {
+        if (!log.isFile()) {
+            return;
+        }
+        long covered = covered(index, log.length());
+        trim(log, covered);
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(log, true)))) {
+            out.write(Utils.hexToBytes(id));
+            Binary.writeString(out, message);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (covered < 0 || log.length() - covered > MAX_TAIL) {
+            build(map(log), index);
+        }
+    }
+
+    /** Return the length of log covered by INDEX, or -1 if INDEX is
+     *  missing, unreadable or covers more than LENGTH bytes. */
+    private static long covered(File index, long length) {
+        if (!index.isFile() || index.length() < INDEX_HEADER) {
+            return -1;
+        }
+        ByteBuffer buf = map(index);
+        long covered = buf.getLong(2 * Integer.BYTES);
+        if (buf.getInt(0) != INDEX_MAGIC
+            || buf.getInt(Integer.BYTES) != INDEX_VERSION
+            || covered > length) {
+            return -1;
+        }
+        return covered;
+    }
+
+    /** Cut LOG back to the end of its last whole record, dropping one
+     *  torn by a crash, and return its contents, mapped.  Records are
+     *  checked from FROM, the end of a record, or from the first if FROM
+     *  is negative. */
+    private static ByteBuffer trim(File log, long from) {
+        ByteBuffer buf = map(log);
+        long end = whole(buf, from);
+        if (end == buf.limit()) {
+            return buf;
+        }
+        try (FileChannel ch = FileChannel.open(log.toPath(),
+                                               StandardOpenOption.WRITE)) {
+            ch.truncate(end);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return map(log);
+    }
+
+    /** Return the end of the last whole record of LOG, checking records
+     *  from FROM, the end of a record, or from the first if FROM is
+     *  negative. */
+    private static long whole(ByteBuffer log, long from) {
+        long end = Math.max(from, LOG_HEADER);
+        while (end < log.limit()) {
+            try {
+                end = next(log, end);
+            } catch (IllegalArgumentException | BufferUnderflowException
+                     excp) {
+                break;
+            }
+        }
+        return end;
+    }
+
+    /** Return the ids, in order, of the commits whose message is
+     *  MESSAGE. */
+    List<String> find(String message) {
+        TreeSet<String> result = new TreeSet<>();
+        int bucket = bucket(message, messageBuckets);
+        int end = start(messageStarts, bucket + 1);
+        for (int i = start(messageStarts, bucket); i < end; i += 1) {
+            long at = index.getLong(messagePostings + i * Long.BYTES);
+            if (message(log, at).equals(message)) {
+                result.add(id(log, at));
+            }
+        }
+        for (long at = covered; at < log.limit(); at = next(log, at)) {
+            if (message(log, at).equals(message)) {
+                result.add(id(log, at));
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /** Return the ids, in order, of the commits each word of WORDS is
+     *  part of a word of the message of, ignoring case. */
+    List<String> grep(String words) {
+        Set<String> wanted = words(words);
+        TreeSet<String> result = new TreeSet<>();
+        if (wanted.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int best = -1;
+        for (String gram : grams(wanted)) {
+            int bucket = bucket(gram, wordBuckets);
+            if (best < 0 || size(bucket) < size(best)) {
+                best = bucket;
+            }
+        }
+        long from = covered;
+        if (best < 0) {
+            from = LOG_HEADER;
+        } else {
+            int end = start(wordStarts, best + 1);
+            for (int i = start(wordStarts, best); i < end; i += 1) {
+                long at = index.getLong(wordPostings + i * Long.BYTES);
+                if (contains(message(log, at), wanted)) {
+                    result.add(id(log, at));
+                }
+            }
+        }
+        for (long at = from; at < log.limit(); at = next(log, at)) {
+            if (contains(message(log, at), wanted)) {
+                result.add(id(log, at));
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /** Return true iff each of WANTED is part of a word of MESSAGE. */
+    private static boolean contains(String message, Set<String> wanted) {
+        Set<String> have = words(message);
+        for (String w : wanted) {
+            boolean found = false;
+            for (String h : have) {
+                if (h.contains(w)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the runs of GRAM characters within WORDS. */
+    static Set<String> grams(Set<String> words) {
+        Set<String> result = new HashSet<>();
+        for (String w : words) {
+            for (int i = 0; i + GRAM <= w.length(); i += 1) {
+                result.add(w.substring(i, i + GRAM));
+            }
+        }
+        return result;
+    }
+
+    /** Return the words of TEXT: its runs of letters and digits, in lower
+     *  case. */
+    static Set<String> words(String text) {
+        Set<String> result = new HashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i += 1) {
+            boolean inword = i < text.length()
+                && Character.isLetterOrDigit(text.charAt(i));
+            if (inword && start < 0) {
+                start = i;
+            } else if (!inword && start >= 0) {
+                result.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return result;
+    }
+
+    /** Return the number of postings in word bucket BUCKET. */
+    private int size(int bucket) {
+        return start(wordStarts, bucket + 1) - start(wordStarts, bucket);
+    }
+
+    /** Return the start of bucket BUCKET of the table at STARTS. */
+    private int start(int starts, int bucket) {
+        return index.getInt(starts + bucket * Integer.BYTES);
+    }
+
+    /** Return the id of the record at AT in LOG. */
+    private static String id(ByteBuffer log, long at) {
+        byte[] raw = new byte[Utils.UID_BYTES];
+        ByteBuffer rec = log.duplicate();
+        rec.position((int) at);
+        rec.get(raw);
+        return Utils.bytesToHex(raw);
+    }
+
+    /** Return the message of the record at AT in LOG. */
+    private static String message(ByteBuffer log, long at) {
+        ByteBuffer rec = log.duplicate();
+        rec.position((int) at + Utils.UID_BYTES);
+        try {
+            return Binary.readString(rec);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the offset of the record after the one at AT in LOG. */
+    private static long next(ByteBuffer log, long at) {
+        ByteBuffer rec = log.duplicate();
+        rec.position((int) at + Utils.UID_BYTES);
+        try {
+            Binary.readString(rec);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return rec.position();
+    }
+
+    /** Return the bucket of KEY in a table of BUCKETS buckets. */
+    private static int bucket(String key, int buckets) {
+        int h = key.hashCode() * SPREAD;
+        return (h ^ (h >>> 16)) & (buckets - 1);
+    }
+
+    /** Return the smallest power of two that is at least N and 1. */
+    private static int buckets(int n) {
+        return Math.max(1, Integer.highestOneBit(Math.max(1, n) - 1) << 1);
+    }
+
+    /** Start an empty log in LOG, for a repository with no commits. */
+    static void create(File log) {
+        rebuildLog(log, null);
+    }
+
+    /** Write a log holding every commit in COMMITS, if any, to LOG. */
+    private static void rebuildLog(File log, ObjectStore commits) {
+        File temp = Utils.tempFile(log);
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(LOG_MAGIC);
+            out.writeInt(LOG_VERSION);
+            List<String> ids =
+                commits == null ? new ArrayList<>() : commits.list();
+            for (String id : ids) {
+                out.write(Utils.hexToBytes(id));
+                Binary.writeString(out,
+                    Commit.fromFile(commits, id).getMessage());
+            }
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        replace(temp, log);
+    }
+
+    /** Write an index over all of LOG to INDEX. */
+    private static void build(ByteBuffer log, File index) {
+        List<Long> records = new ArrayList<>();
+        List<String> messages = new ArrayList<>();
+        Set<String> vocabulary = new HashSet<>();
+        for (long at = LOG_HEADER; at < log.limit(); at = next(log, at)) {
+            records.add(at);
+            messages.add(message(log, at));
+            vocabulary.addAll(grams(words(messages.get(
+                messages.size() - 1))));
+        }
+        int n = records.size();
+        int nmessages = buckets(n), nwords = buckets(vocabulary.size());
+        int[] mstarts = new int[nmessages + 1], wstarts = new int[nwords + 1];
+        List<int[]> wordsOf = new ArrayList<>();
+        for (int r = 0; r < n; r += 1) {
+            mstarts[bucket(messages.get(r), nmessages) + 1] += 1;
+            Set<String> ws = grams(words(messages.get(r)));
+            int[] bs = new int[ws.size()];
+            int k = 0;
+            for (String w : ws) {
+                bs[k] = bucket(w, nwords);
+                k += 1;
+            }
+            Arrays.sort(bs);
+            int distinct = 0;
+            for (int i = 0; i < bs.length; i += 1) {
+                if (i == 0 || bs[i] != bs[i - 1]) {
+                    bs[distinct] = bs[i];
+                    distinct += 1;
+                    wstarts[bs[i] + 1] += 1;
+                }
+            }
+            wordsOf.add(Arrays.copyOf(bs, distinct));
+        }
+        for (int b = 0; b < nmessages; b += 1) {
+            mstarts[b + 1] += mstarts[b];
+        }
+        for (int b = 0; b < nwords; b += 1) {
+            wstarts[b + 1] += wstarts[b];
+        }
+        long[] mpostings = new long[n];
+        long[] wpostings = new long[wstarts[nwords]];
+        int[] mfill = Arrays.copyOf(mstarts, nmessages);
+        int[] wfill = Arrays.copyOf(wstarts, nwords);
+        for (int r = 0; r < n; r += 1) {
+            mpostings[mfill[bucket(messages.get(r), nmessages)]++] =
+                records.get(r);
+            for (int b : wordsOf.get(r)) {
+                wpostings[wfill[b]++] = records.get(r);
+            }
+        }
+        write(index, log.limit(), mstarts, wstarts, mpostings, wpostings);
+    }
+
+    /** Write an index covering COVERED bytes of log, with bucket starts
+     *  MSTARTS and WSTARTS and postings MPOSTINGS and WPOSTINGS, to
+     *  FILE. */
+    private static void write(File file, long covered, int[] mstarts,
+                              int[] wstarts, long[] mpostings,
+                              long[] wpostings) {
+        File temp = Utils.tempFile(file);
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeLong(covered);
+            out.writeInt(mstarts.length - 1);
+            out.writeInt(wstarts.length - 1);
+            out.writeInt(mpostings.length);
+            out.writeInt(wpostings.length);
+            for (int s : mstarts) {
+                out.writeInt(s);
+            }
+            for (int s : wstarts) {
+                out.writeInt(s);
+            }
+            for (long p : mpostings) {
+                out.writeLong(p);
+            }
+            for (long p : wpostings) {
+                out.writeLong(p);
+            }
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        replace(temp, file);
+    }
+
+    /** Return the contents of FILE, mapped. */
+    private static ByteBuffer map(File file) {
+        try (FileChannel ch = FileChannel.open(file.toPath(),
+                                               StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Replace FILE with TEMP atomically. */
+    private static void replace(File temp, File file) {
+        try {
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,769 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+/** A content store of one kind of object (commits or blobs).
+ *
+ *  New objects are written "loose", one file per id, each in a subfolder
+ *  named by the first two digits of its id so that no one folder grows
+ *  too large.  Stores written before that keep objects directly in the
+ *  loose folder; until shard moves them and marks the store, lookups try
+ *  both places.  The
+ *  repack operation appends loose objects to a single append-only pack
+ *  file and rewrites a sorted index of id, offset and length, after which
+ *  the loose copies are removed.  Reads look for a loose file first and
+ *  then binary-search the memory-mapped index, so callers never need to
+ *  know where an object lives.
+ *
+ *  Index layout (big-endian): magic, version, count; 256 fan-out ints;
+ *  count sorted 20-byte ids; count (offset long, length long) pairs.
+ *  The pack file is a magic int followed by the stored object bytes.
+ *
+ *  Objects are written through a Codec (deflate unless the gitlet.codec
+ *  property or GITLET_CODEC names another) behind a header naming it, and
+ *  decoded as they are streamed back; objects without the header are
+ *  read as they are.  The high bit of the codec byte is a flag that a
+ *  subclass may set to mark objects of a second kind, such as deltas,
+ *  without looking at their contents.
+ *  @author Yu Jia Xu
+ */
+class ObjectStore {
+
+    /** Pack file magic, "GPAK". */
+    private static final int PACK_MAGIC = 0x4750414b;
+    /** Index file magic, "GIDX". */
+    private static final int INDEX_MAGIC = 0x47494458;
+    /** Index format version. */
+    private static final int VERSION = 1;
+    /** Length of a shard folder's name. */
+    private static final int SHARD = 2;
+    /** File in the loose folder marking that every loose object is in
+     *  its shard. */
+    private static final String SHARDED = "sharded";
+    /** Number of fan-out entries. */
+    private static final int FANOUT = 256;
+    /** Byte mask. */
+    private static final int BYTE = 0xff;
+    /** Size of the index header in bytes. */
+    private static final int HEADER = 3 * Integer.BYTES;
+    /** Size of one offset/length entry in bytes. */
+    private static final int ENTRY = 2 * Long.BYTES;
+    /** Leading bytes of an object written through a codec. */
+    private static final byte[] OBJECT_MAGIC =
+        "\0gitobj".getBytes(StandardCharsets.ISO_8859_1);
+    /** Length of an object header: OBJECT_MAGIC and a codec id. */
+    static final int OBJECT_HEADER = OBJECT_MAGIC.length + 1;
+    /** Flag in the codec byte of an object header. */
+    static final int FLAGGED = 0x80;
+    /** Mask of the codec id in the codec byte of an object header. */
+    private static final int CODEC_MASK = FLAGGED - 1;
+
+    /** Folder of loose objects. */
+    private final File loose;
+    /** True once the loose folder is known to be marked SHARDED, false
+     *  once known not to be, and null until checked. */
+    private Boolean sharded;
+    /** Pack file. */
+    private final File packFile;
+    /** Pack index file. */
+    private final File indexFile;
+    /** Codec used for new objects. */
+    private Codec codec = Codec.forName(System.getProperty("gitlet.codec",
+                                            System.getenv("GITLET_CODEC")));
+
+    /** Mapped index, or null if not loaded or there is no pack. */
+    private ByteBuffer index;
+    /** Number of packed objects. */
+    private int packed;
+    /** Modification time of the index when it was mapped. */
+    private long indexStamp = -1;
+
+    /** A store keeping loose objects in LOOSE and its pack in the files
+     *  PACK.pack and PACK.idx. */
+    ObjectStore(File loose, File pack) {
+        this.loose = loose;
+        this.packFile = new File(pack.getPath() + ".pack");
+        this.indexFile = new File(pack.getPath() + ".idx");
+    }
+
+    /** Return the loose file that would hold object ID. */
+    File looseFile(String id) {
+        if (id.length() != Utils.UID_LENGTH) {
+            return Utils.join(loose, id);
+        }
+        File shard = Utils.join(loose, id.substring(0, SHARD),
+                                id.substring(SHARD));
+        if (sharded()) {
+            return shard;
+        }
+        File flat = Utils.join(loose, id);
+        return flat.isFile() ? flat : shard;
+    }
+
+    /** Return true iff every loose object is known to be in its shard. */
+    private synchronized boolean sharded() {
+        if (sharded == null) {
+            sharded = new File(loose, SHARDED).isFile();
+        }
+        return sharded;
+    }
+
+    /** Move every loose object kept directly in the loose folder into its
+     *  shard, mark this store as sharded, and return how many objects
+     *  were moved.  Objects are moved one at a time, each atomically, so
+     *  an interrupted move loses nothing and can simply be run again. */
+    int shard() {
+        loose.mkdirs();
+        int moved = 0;
+        for (String id : looseIds()) {
+            File flat = Utils.join(loose, id);
+            if (flat.isFile()) {
+                File dest = Utils.join(loose, id.substring(0, SHARD),
+                                       id.substring(SHARD));
+                dest.getParentFile().mkdirs();
+                try {
+                    Files.move(flat.toPath(), dest.toPath(),
+                               StandardCopyOption.REPLACE_EXISTING,
+                               StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+                moved += 1;
+            }
+        }
+        Utils.writeContents(new File(loose, SHARDED), "");
+        synchronized (this) {
+            sharded = true;
+        }
+        return moved;
+    }
+
+    /** Return the ids of the loose objects, in their shards or not, in no
+     *  particular order. */
+    private List<String> looseIds() {
+        List<String> result = new ArrayList<>();
+        String[] names = loose.list();
+        if (names == null) {
+            return result;
+        }
+        for (String name : names) {
+            if (name.length() == Utils.UID_LENGTH) {
+                result.add(name);
+            } else if (name.length() == SHARD) {
+                String[] rest = new File(loose, name).list();
+                for (int i = 0; rest != null && i < rest.length; i += 1) {
+                    if (rest[i].length() == Utils.UID_LENGTH - SHARD) {
+                        result.add(name + rest[i]);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return true iff object ID is stored, loose or packed. */
+    boolean contains(String id) {
+        return looseFile(id).isFile() || findPacked(id) >= 0;
+    }
+
+    /** Return the number of bytes stored for object ID, which may be
+     *  compressed, or -1 if there is no such object. */
+    long storedLength(String id) {
+        File file = looseFile(id);
+        if (file.isFile()) {
+            return file.length();
+        }
+        int at = findPacked(id);
+        return at < 0 ? -1 : packedLength(at);
+    }
+
+    /** Return the contents of object ID.  Throws IllegalArgumentException
+     *  if there is no such object. */
+    byte[] read(String id) {
+        return readStored(id);
+    }
+
+    /** Return a stream of the contents of object ID, decoded as it is
+     *  read.  Throws IllegalArgumentException if there is no such
+     *  object. */
+    InputStream open(String id) {
+        return openStored(id);
+    }
+
+    /** Copy the contents of object ID to the file DEST, replacing its
+     *  contents, without holding the whole object in memory.  Objects
+     *  stored without compression are copied by FileChannel.transferTo. */
+    void copyTo(String id, File dest) {
+        try (FileChannel out = FileChannel.open(dest.toPath(),
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (!transferPlain(id, out)) {
+                try (InputStream in = open(id)) {
+                    in.transferTo(Channels.newOutputStream(out));
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** If object ID is stored uncompressed and unflagged, transfer its
+     *  contents to OUT and return true; otherwise return false and write
+     *  nothing. */
+    boolean transferPlain(String id, FileChannel out) throws IOException {
+        File file = looseFile(id);
+        long offset = 0, length;
+        File source;
+        if (file.isFile()) {
+            source = file;
+            length = file.length();
+        } else {
+            int at = findPacked(id);
+            if (at < 0) {
+                throw new IllegalArgumentException("no such object: " + id);
+            }
+            source = packFile;
+            offset = packedOffset(at);
+            length = packedLength(at);
+        }
+        try (FileChannel in = FileChannel.open(source.toPath(),
+                                               StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(OBJECT_HEADER);
+            while (head.hasRemaining() && head.position() < length
+                   && in.read(head, offset + head.position()) > 0) {
+                continue;
+            }
+            if (head.position() == OBJECT_HEADER
+                && hasObjectMagic(head.array())) {
+                if (head.get(OBJECT_MAGIC.length) != Codec.NONE.id()) {
+                    return false;
+                }
+                offset += OBJECT_HEADER;
+                length -= OBJECT_HEADER;
+            }
+            for (long done = 0; done < length;) {
+                done += in.transferTo(offset + done, length - done, out);
+            }
+        }
+        return true;
+    }
+
+    /** Store the contents of the file SOURCE, streaming it, under the id
+     *  sha1(PREFIX, contents), and return that id. */
+    String writeFile(String prefix, File source) {
+        try (InputStream in = Files.newInputStream(source.toPath())) {
+            return write(prefix, in);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Store everything read from SOURCE under the id sha1(PREFIX,
+     *  contents), and return that id. */
+    String write(String prefix, InputStream source) {
+        MessageDigest md = Utils.sha1Digest();
+        md.update(prefix.getBytes(StandardCharsets.UTF_8));
+        File temp = newTemp();
+        try (InputStream in = new DigestInputStream(source, md);
+             OutputStream out = encoder(temp)) {
+            in.transferTo(out);
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        String id = Utils.bytesToHex(md.digest());
+        install(temp, id);
+        return id;
+    }
+
+    /** Return the bytes stored for object ID, as written.  Throws
+     *  IllegalArgumentException if there is no such object. */
+    final byte[] readStored(String id) {
+        try (InputStream in = openStored(id)) {
+            return in.readAllBytes();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** The decoded bytes stored for an object, and its header flags. */
+    static class Stored extends FilterInputStream {
+        /** FLAGGED if the object was written flagged, else 0. */
+        private final int flags;
+
+        /** The bytes read from IN, for an object written with FLAGS. */
+        Stored(InputStream in, int flags) {
+            super(in);
+            this.flags = flags;
+        }
+
+        /** Return true iff the object was written flagged. */
+        boolean flagged() {
+            return flags != 0;
+        }
+    }
+
+    /** Return a stream of the bytes stored for object ID, as written,
+     *  decoding them with the codec named in the object's header.  Objects
+     *  without a header are returned as they are.  Throws
+     *  IllegalArgumentException if there is no such object. */
+    final Stored openStored(String id) {
+        InputStream raw = openFile(id);
+        try {
+            BufferedInputStream in =
+                new BufferedInputStream(raw, Codec.BUFFER);
+            in.mark(OBJECT_HEADER);
+            byte[] head = in.readNBytes(OBJECT_HEADER);
+            if (head.length == OBJECT_HEADER && hasObjectMagic(head)) {
+                int code = head[OBJECT_MAGIC.length];
+                return new Stored(Codec.forId(code & CODEC_MASK).decode(in),
+                                  code & FLAGGED);
+            }
+            in.reset();
+            return new Stored(in, 0);
+        } catch (IOException | IllegalArgumentException excp) {
+            try {
+                raw.close();
+            } catch (IOException ignored) {
+                /* Already failing. */
+            }
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return a stream of the undecoded bytes of object ID, loose or
+     *  packed.  Throws IllegalArgumentException if there is none. */
+    private InputStream openFile(String id) {
+        try {
+            File file = looseFile(id);
+            if (file.isFile()) {
+                return Files.newInputStream(file.toPath());
+            }
+            int at = findPacked(id);
+            if (at < 0) {
+                throw new IllegalArgumentException("no such object: " + id);
+            }
+            return new PackSlice(FileChannel.open(packFile.toPath(),
+                                                  StandardOpenOption.READ),
+                                 packedOffset(at), packedLength(at));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return true iff HEAD starts with OBJECT_MAGIC. */
+    private static boolean hasObjectMagic(byte[] head) {
+        for (int i = 0; i < OBJECT_MAGIC.length; i += 1) {
+            if (head[i] != OBJECT_MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the codec used for new objects. */
+    Codec codec() {
+        return codec;
+    }
+
+    /** Use CODEC for objects written from now on. */
+    void setCodec(Codec codec) {
+        this.codec = codec;
+    }
+
+    /** Store CONTENTS, each a String or byte array, as object ID unless it
+     *  is already present. */
+    void write(String id, Object... contents) {
+        writeFlagged(id, 0, contents);
+    }
+
+    /** Store CONTENTS as for write, with the header flags FLAGS, which
+     *  are FLAGGED or 0. */
+    void writeFlagged(String id, int flags, Object... contents) {
+        if (contains(id)) {
+            return;
+        }
+        File temp = newTemp();
+        try (OutputStream out = encoder(temp, flags)) {
+            for (Object obj : contents) {
+                if (obj instanceof byte[]) {
+                    out.write((byte[]) obj);
+                } else {
+                    out.write(((String) obj).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        } catch (IOException | ClassCastException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        install(temp, id);
+    }
+
+    /** Return a fresh temporary file in the loose folder, for an object
+     *  that is being written. */
+    File newTemp() {
+        try {
+            return File.createTempFile("tmp", null, loose);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return a stream that writes an object header and then encodes what
+     *  is written to it into TEMP with the current codec. */
+    OutputStream encoder(File temp) throws IOException {
+        return encoder(temp, 0);
+    }
+
+    /** Return a stream as for encoder(TEMP), whose header carries the
+     *  flags FLAGS. */
+    OutputStream encoder(File temp, int flags) throws IOException {
+        OutputStream out = new BufferedOutputStream(
+            Files.newOutputStream(temp.toPath()), Codec.BUFFER);
+        out.write(OBJECT_MAGIC);
+        out.write(codec.id() | flags);
+        return codec.encode(out);
+    }
+
+    /** Move the finished temporary file TEMP into place as object ID, or
+     *  discard it if ID is already stored. */
+    void install(File temp, String id) {
+        if (contains(id)) {
+            temp.delete();
+            return;
+        }
+        File dest = looseFile(id);
+        dest.getParentFile().mkdirs();
+        try {
+            Files.move(temp.toPath(), dest.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the ids of all stored objects in lexicographic order. */
+    List<String> list() {
+        List<String> result = looseIds();
+        loadIndex();
+        for (int i = 0; i < packed; i += 1) {
+            result.add(packedId(i));
+        }
+        Collections.sort(result);
+        for (int i = result.size() - 1; i > 0; i -= 1) {
+            if (result.get(i).equals(result.get(i - 1))) {
+                result.remove(i);
+            }
+        }
+        return result;
+    }
+
+    /** Delete every object whose id is not in KEEP.  Loose objects are
+     *  simply deleted; if the pack holds any unwanted object, the wanted
+     *  ones are first copied back out as loose objects and the pack is
+     *  then rebuilt without the rest. */
+    void retain(Set<String> keep) {
+        loadIndex();
+        boolean rewrite = false;
+        for (int i = 0; i < packed && !rewrite; i += 1) {
+            rewrite = !keep.contains(packedId(i));
+        }
+        if (rewrite) {
+            for (int i = 0; i < packed; i += 1) {
+                String id = packedId(i);
+                File dest = looseFile(id);
+                if (keep.contains(id) && !dest.isFile()) {
+                    File temp = newTemp();
+                    dest.getParentFile().mkdirs();
+                    try (InputStream in = openFile(id)) {
+                        Files.copy(in, temp.toPath(),
+                                   StandardCopyOption.REPLACE_EXISTING);
+                        Files.move(temp.toPath(), dest.toPath(),
+                                   StandardCopyOption.ATOMIC_MOVE);
+                    } catch (IOException excp) {
+                        temp.delete();
+                        throw new IllegalArgumentException(excp.getMessage());
+                    }
+                }
+            }
+        }
+        for (String name : looseIds()) {
+            if (!keep.contains(name)) {
+                looseFile(name).delete();
+            }
+        }
+        if (rewrite) {
+            indexFile.delete();
+            packFile.delete();
+            indexStamp = -1;
+            repack();
+        }
+    }
+
+    /** Move every loose object into the pack and return how many were
+     *  moved.  The pack is appended to and synced before the new index is
+     *  renamed into place, and loose files are deleted only after that, so
+     *  an interrupted repack loses nothing. */
+    int repack() {
+        List<String> names = looseIds();
+        if (names.isEmpty()) {
+            return 0;
+        }
+        Collections.sort(names);
+        loadIndex();
+        TreeMap<String, long[]> entries = new TreeMap<>();
+        for (int i = 0; i < packed; i += 1) {
+            entries.put(packedId(i),
+                        new long[] {packedOffset(i), packedLength(i)});
+        }
+        List<String> moved = new ArrayList<>();
+        packFile.getParentFile().mkdirs();
+        try (FileChannel out = FileChannel.open(packFile.toPath(),
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long end = out.size();
+            if (end == 0) {
+                ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+                magic.putInt(PACK_MAGIC).flip();
+                end += out.write(magic, 0);
+            }
+            for (String name : names) {
+                if (!entries.containsKey(name)) {
+                    long length = append(out, end, looseFile(name));
+                    entries.put(name, new long[] {end, length});
+                    end += length;
+                }
+                moved.add(name);
+            }
+            out.force(true);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        writeIndex(entries);
+        for (String name : moved) {
+            looseFile(name).delete();
+        }
+        return moved.size();
+    }
+
+    /** Copy FILE into OUT at offset AT without reading it into memory,
+     *  and return its length. */
+    private static long append(FileChannel out, long at, File file)
+        throws IOException {
+        try (FileChannel in = FileChannel.open(file.toPath(),
+                 StandardOpenOption.READ)) {
+            long length = in.size();
+            long done = 0;
+            while (done < length) {
+                long n = out.transferFrom(in, at + done, length - done);
+                if (n <= 0) {
+                    throw new IOException("short copy of " + file);
+                }
+                done += n;
+            }
+            return length;
+        }
+    }
+
+    /** Atomically replace the index with ENTRIES, mapping each id to its
+     *  offset and length. */
+    private void writeIndex(TreeMap<String, long[]> entries) {
+        File temp = Utils.tempFile(indexFile);
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(
+                     temp.toPath())))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            int[] fanout = new int[FANOUT];
+            for (String id : entries.keySet()) {
+                fanout[Integer.parseInt(id.substring(0, 2), 16)] += 1;
+            }
+            for (int b = 0, total = 0; b < FANOUT; b += 1) {
+                total += fanout[b];
+                out.writeInt(total);
+            }
+            for (String id : entries.keySet()) {
+                out.write(Utils.hexToBytes(id));
+            }
+            for (long[] entry : entries.values()) {
+                out.writeLong(entry[0]);
+                out.writeLong(entry[1]);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try {
+            Files.move(temp.toPath(), indexFile.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        indexStamp = -1;
+    }
+
+    /** Map the index if it exists and changed since it was last mapped.
+     *  Synchronized so that threads reading objects at once never see a
+     *  half-loaded index. */
+    private synchronized void loadIndex() {
+        long stamp = indexFile.lastModified();
+        if (stamp == indexStamp) {
+            return;
+        }
+        indexStamp = stamp;
+        index = null;
+        packed = 0;
+        if (!indexFile.isFile()) {
+            return;
+        }
+        try (FileChannel ch = FileChannel.open(indexFile.toPath(),
+                                               StandardOpenOption.READ)) {
+            index = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (index.getInt(0) != INDEX_MAGIC
+            || index.getInt(Integer.BYTES) != VERSION) {
+            throw new IllegalArgumentException("bad pack index");
+        }
+        packed = index.getInt(2 * Integer.BYTES);
+    }
+
+    /** Return the position of ID in the pack index, or -1. */
+    private int findPacked(String id) {
+        if (id == null || id.length() != Utils.UID_LENGTH) {
+            return -1;
+        }
+        loadIndex();
+        if (packed == 0) {
+            return -1;
+        }
+        byte[] key = Utils.hexToBytes(id);
+        int first = key[0] & BYTE;
+        int lo = first == 0 ? 0 : fanout(first - 1);
+        int hi = fanout(first) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compareAt(mid, key);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Return the number of packed ids whose first byte is at most B. */
+    private int fanout(int b) {
+        return index.getInt(HEADER + b * Integer.BYTES);
+    }
+
+    /** Return the offset of the id table in the index. */
+    private int idsAt() {
+        return HEADER + FANOUT * Integer.BYTES;
+    }
+
+    /** Return the offset of entry I in the index. */
+    private int entryAt(int i) {
+        return idsAt() + packed * Utils.UID_BYTES + i * ENTRY;
+    }
+
+    /** Return the id of packed object I. */
+    private String packedId(int i) {
+        byte[] raw = new byte[Utils.UID_BYTES];
+        for (int k = 0; k < raw.length; k += 1) {
+            raw[k] = index.get(idsAt() + i * Utils.UID_BYTES + k);
+        }
+        return Utils.bytesToHex(raw);
+    }
+
+    /** Return the pack offset of packed object I. */
+    private long packedOffset(int i) {
+        return index.getLong(entryAt(i));
+    }
+
+    /** Return the length of packed object I. */
+    private long packedLength(int i) {
+        return index.getLong(entryAt(i) + Long.BYTES);
+    }
+
+    /** Compare packed id I with raw id KEY as unsigned bytes. */
+    private int compareAt(int i, byte[] key) {
+        int base = idsAt() + i * Utils.UID_BYTES;
+        for (int k = 0; k < key.length; k += 1) {
+            int c = (index.get(base + k) & BYTE) - (key[k] & BYTE);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /** A stream over one object in a pack file. */
+    private static class PackSlice extends InputStream {
+        /** Open pack file. */
+        private final FileChannel channel;
+        /** Position of the next byte. */
+        private long position;
+        /** Position just past the object. */
+        private final long end;
+
+        /** A stream over the LENGTH bytes of CHANNEL at OFFSET. */
+        PackSlice(FileChannel channel, long offset, long length) {
+            this.channel = channel;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & BYTE;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int n = (int) Math.min(len, end - position);
+            n = channel.read(ByteBuffer.wrap(b, off, n), position);
+            if (n < 0) {
+                throw new IOException("truncated pack");
+            }
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
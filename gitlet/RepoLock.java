@@ -0,0 +1,201 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Objects;
+
+/** The lock that Gitlet commands take on a repository, held as a lock on
+ *  the file .gitlet/lock, so that it is seen by every process.  Commands
+ *  that only read take it shared and run side by side; commands that
+ *  change the repository take it exclusive and run alone.  A command
+ *  that finds the lock held tries again, waiting twice as long each
+ *  time up to MAX_BACKOFF, and gives up after TIMEOUT.  A process holds
+ *  each file lock once: a command that wants the lock shared while other
+ *  threads of the process hold it shared joins them without locking the
+ *  file again, and the file is unlocked when the last of them is done.
+ *  Each process keeps counts of how often and how long its commands
+ *  waited.
+ *  @author Yu Jia Xu
+ */
+class RepoLock {
+
+    /** Milliseconds a command waits for the lock before giving up, as
+     *  selected by the gitlet.locktimeout property or
+     *  GITLET_LOCK_TIMEOUT. */
+    static final long TIMEOUT = Long.parseLong(System.getProperty(
+        "gitlet.locktimeout", Objects.requireNonNullElse(
+            System.getenv("GITLET_LOCK_TIMEOUT"), "30000")));
+
+    /** Longest wait in milliseconds between tries. */
+    private static final long MAX_BACKOFF = 32;
+
+    /** Nanoseconds per millisecond. */
+    private static final double MILLIS = 1e6;
+
+    /** Locks taken by this process. */
+    private static long acquired;
+    /** Locks taken by this process after waiting. */
+    private static long contended;
+    /** Locks this process gave up on. */
+    private static long timeouts;
+    /** Total and longest wait, in nanoseconds, of this process. */
+    private static long waited, longest;
+
+    /** The file locks this process holds, by the path of the file. */
+    private static final HashMap<String, Holding> HOLDINGS = new HashMap<>();
+
+    /** The file locked. */
+    private final File file;
+    /** The path of FILE, as HOLDINGS knows it. */
+    private final String key;
+
+    /** The lock held as a lock on FILE. */
+    RepoLock(File file) {
+        this.file = file;
+        key = file.getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    /** A file lock this process holds, and the commands holding it. */
+    private static class Holding {
+        /** The channel the file is locked through. */
+        private final FileChannel channel;
+        /** True iff the file is locked shared. */
+        private final boolean shared;
+        /** Commands holding the lock. */
+        private int holders;
+
+        /** A lock, SHARED or exclusive, held through CHANNEL. */
+        Holding(FileChannel channel, boolean shared) {
+            this.channel = channel;
+            this.shared = shared;
+        }
+    }
+
+    /** A lock held until closed. */
+    class Held implements AutoCloseable {
+        /** The file lock this is one holder of. */
+        private final Holding holding;
+        /** True once this was released. */
+        private boolean closed;
+
+        /** One more holder of HOLDING. */
+        Held(Holding holding) {
+            this.holding = holding;
+            holding.holders += 1;
+        }
+
+        /** Release the lock, unlocking the file if this was its last
+         *  holder in this process. */
+        @Override
+        public void close() {
+            synchronized (HOLDINGS) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                holding.holders -= 1;
+                if (holding.holders > 0) {
+                    return;
+                }
+                HOLDINGS.remove(key);
+            }
+            try {
+                holding.channel.close();
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+
+    /** Return the lock, SHARED or exclusive, once it is free, waiting at
+     *  most TIMEOUT milliseconds for it. */
+    Held acquire(boolean shared, long timeout) {
+        long start = System.nanoTime();
+        long deadline = start + timeout * (long) MILLIS;
+        long backoff = 1;
+        try {
+            while (true) {
+                Held held = tryAcquire(shared);
+                long now = System.nanoTime();
+                if (held != null) {
+                    record(now - start, backoff > 1);
+                    return held;
+                } else if (now - deadline >= 0) {
+                    synchronized (RepoLock.class) {
+                        timeouts += 1;
+                    }
+                    throw Utils.error("Timed out waiting for another "
+                                      + "Gitlet command to finish.");
+                }
+                Thread.sleep(backoff);
+                backoff = Math.min(2 * backoff, MAX_BACKOFF);
+            }
+        } catch (InterruptedException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the lock, SHARED or exclusive, or null if it is not free
+     *  now. */
+    Held tryAcquire(boolean shared) {
+        synchronized (HOLDINGS) {
+            Holding holding = HOLDINGS.get(key);
+            if (holding != null) {
+                return shared && holding.shared ? new Held(holding) : null;
+            }
+            FileChannel ch = null;
+            try {
+                ch = FileChannel.open(file.toPath(),
+                                      StandardOpenOption.CREATE,
+                                      StandardOpenOption.READ,
+                                      StandardOpenOption.WRITE);
+                FileLock lock;
+                try {
+                    lock = ch.tryLock(0, Long.MAX_VALUE, shared);
+                } catch (OverlappingFileLockException excp) {
+                    lock = null;
+                }
+                if (lock == null) {
+                    ch.close();
+                    return null;
+                }
+            } catch (IOException excp) {
+                try {
+                    if (ch != null) {
+                        ch.close();
+                    }
+                } catch (IOException ignored) {
+                    /* Already failing. */
+                }
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            holding = new Holding(ch, shared);
+            HOLDINGS.put(key, holding);
+            return new Held(holding);
+        }
+    }
+
+    /** Count one lock taken after NANOS nanoseconds, which WAITED iff it
+     *  was not free at first. */
+    private static synchronized void record(long nanos, boolean waited) {
+        acquired += 1;
+        if (waited) {
+            contended += 1;
+            RepoLock.waited += nanos;
+            longest = Math.max(longest, nanos);
+        }
+    }
+
+    /** Return a report of the locks taken by this process. */
+    static synchronized String stats() {
+        return String.format("%d taken, %d after waiting %.1f ms "
+                             + "(longest %.1f ms), %d timed out",
+                             acquired, contended, waited / MILLIS,
+                             longest / MILLIS, timeouts);
+    }
+}
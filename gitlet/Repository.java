@@ -0,0 +1,1931 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+
+/** A Gitlet repository: the working folder ROOT and the metadata kept
+ *  in ROOT/.gitlet.  Each Repository owns its paths, its object stores
+ *  and their caches, and the streams its commands print to, so one
+ *  process can work on any number of repositories at once.  Commands on
+ *  one repository run one at a time; errors are thrown as
+ *  GitletExceptions whose message is what the command-line tool prints.
+ *  @author Yu Jia Xu
+ */
+public class Repository {
+    /** Working Directory folder. */
+    private final File root;
+    /** Main metadata folder. */
+    private final File mainfolder;
+    /** Stage file folder. */
+    private final File stagefolder;
+    /** Commit class folder. */
+    private final File commitfolder;
+    /** Tree folder. */
+    private final File treefolder;
+    /** Current State file folder. */
+    private final File statefolder;
+    /** Blob Content folder. */
+    private final File blobfolder;
+    /** Remove files folder. */
+    private final File rmfolder;
+    /** Commit graph file. */
+    private final File graphfile;
+    /** Log of commit messages. */
+    private final File messagefile;
+    /** Index over the log of commit messages. */
+    private final File messageindexfile;
+    /** Pack file folder. */
+    private final File packfolder;
+    /** Present once blob ids depend only on file contents. */
+    private final File contentids;
+    /** Stat cache of the working files. */
+    private final File indexfile;
+    /** Socket of the daemon serving this repository. */
+    private final File socketfile;
+    /** Stored commits, loose or packed. */
+    private final ObjectStore commitstore;
+    /** Stored trees, loose or packed. */
+    private final ObjectStore treestore;
+    /** Stored blobs, loose or packed. */
+    private final BlobStore blobstore;
+    /** Checkpoint and journal of the state. */
+    private final StateJournal journal;
+    /** Lock on the repository, shared with other processes. */
+    private final RepoLock repolock;
+    /** Held while a command runs, and shared by every view of this
+     *  repository. */
+    private final Object lock;
+    /** Where commands print their output. */
+    private final PrintStream out;
+    /** Where commands print verbose reports. */
+    private final PrintStream err;
+    /** The stat cache, once loaded by the current command. */
+    private StatIndex statindex;
+    /** The state as last read or saved by the current command, encoded,
+     *  or null. */
+    private byte[] state;
+    /** True iff the current command saved the state. */
+    private boolean statesaved;
+    /** True iff the current command holds the lock shared, and so must
+     *  not write to the repository. */
+    private boolean shared;
+
+    /** The repository whose working folder is ROOT, printing to OUT and
+     *  reporting to ERR.  ROOT need not be initialized yet. */
+    public Repository(File root, PrintStream out, PrintStream err) {
+        this.root = root;
+        mainfolder = Utils.join(root, ".gitlet");
+        stagefolder = Utils.join(mainfolder, "stage_folder");
+        commitfolder = Utils.join(mainfolder, "commit_folder");
+        treefolder = Utils.join(mainfolder, "tree_folder");
+        statefolder = Utils.join(mainfolder, "state_folder");
+        blobfolder = Utils.join(mainfolder, "blob_folder");
+        rmfolder = Utils.join(mainfolder, "rm_folder");
+        graphfile = Utils.join(mainfolder, "commit_graph");
+        messagefile = Utils.join(mainfolder, "messages");
+        messageindexfile = Utils.join(mainfolder, "messages.idx");
+        packfolder = Utils.join(mainfolder, "pack_folder");
+        contentids = Utils.join(mainfolder, "content_ids");
+        indexfile = Utils.join(mainfolder, "index");
+        socketfile = Utils.join(mainfolder, "daemon.sock");
+        commitstore = new ObjectStore(commitfolder,
+                Utils.join(packfolder, "commits"));
+        treestore = new ObjectStore(treefolder,
+                Utils.join(packfolder, "trees"));
+        blobstore = new BlobStore(blobfolder,
+                Utils.join(packfolder, "blobs"));
+        journal = new StateJournal(statefolder, StateJournal.SYNC_EVERY);
+        repolock = new RepoLock(Utils.join(mainfolder, "lock"));
+        lock = new Object();
+        this.out = out;
+        this.err = err;
+    }
+
+    /** A view of REPO that prints to OUT and reports to ERR, sharing its
+     *  stores, caches and lock. */
+    private Repository(Repository repo, PrintStream out, PrintStream err) {
+        root = repo.root;
+        mainfolder = repo.mainfolder;
+        stagefolder = repo.stagefolder;
+        commitfolder = repo.commitfolder;
+        treefolder = repo.treefolder;
+        statefolder = repo.statefolder;
+        blobfolder = repo.blobfolder;
+        rmfolder = repo.rmfolder;
+        graphfile = repo.graphfile;
+        messagefile = repo.messagefile;
+        messageindexfile = repo.messageindexfile;
+        packfolder = repo.packfolder;
+        contentids = repo.contentids;
+        indexfile = repo.indexfile;
+        socketfile = repo.socketfile;
+        commitstore = repo.commitstore;
+        treestore = repo.treestore;
+        blobstore = repo.blobstore;
+        journal = repo.journal;
+        repolock = repo.repolock;
+        lock = repo.lock;
+        this.out = out;
+        this.err = err;
+    }
+
+    /** Return a view of this repository whose commands print to OUT and
+     *  report to ERR. */
+    public Repository withOutput(PrintStream out, PrintStream err) {
+        return new Repository(this, out, err);
+    }
+
+    /** Largest number of working files written at once, as selected by
+     *  the gitlet.threads property or GITLET_THREADS. */
+    static final int THREADS = Integer.parseInt(System.getProperty(
+        "gitlet.threads", Objects.requireNonNullElse(
+            System.getenv("GITLET_THREADS"),
+            Integer.toString(Runtime.getRuntime().availableProcessors()))));
+
+    /** True iff commands report what they did on the error stream, as
+     *  selected by the gitlet.verbose property or GITLET_VERBOSE. */
+    static final boolean VERBOSE = System.getProperty("gitlet.verbose",
+        System.getenv("GITLET_VERBOSE")) != null;
+
+    /** Most candidates listed when an abbreviated id is ambiguous. */
+    static final int CANDIDATES = 10;
+
+    /** Fewest digits shown of an abbreviated commit id. */
+    static final int ABBREV = 7;
+
+    /** Commands that only read the repository, and so may run while
+     *  others that only read it do.  The stat cache they bring up to date
+     *  is saved after they release the lock, if it is free to take
+     *  exclusive then, and find takes it exclusive when the message
+     *  index must be rebuilt or repaired. */
+    static final Set<String> READERS =
+        Set.of("log", "global-log", "find", "status", "diff");
+
+    /**
+     * Run the command in ARGS, as given to the command-line tool,
+     * holding the repository's lock: shared by the READERS, and
+     * exclusive for the rest.  Errors are thrown as GitletExceptions
+     * carrying the message to print.
+     * @param args command and operands
+     */
+    public void run(String... args) {
+        synchronized (lock) {
+            statindex = null;
+            state = null;
+            statesaved = false;
+            try {
+                try (RepoLock.Held held = lockfor(args)) {
+                    try {
+                        dispatch(args);
+                    } finally {
+                        flushstate();
+                    }
+                }
+                if (shared) {
+                    savestatindex();
+                }
+            } finally {
+                verbose("commit cache: %s", Commit.CACHE);
+                verbose("state: %d forced writes", journal.syncs());
+                verbose("lock: %s", RepoLock.stats());
+            }
+        }
+    }
+
+    /**
+     * Return the lock the command in ARGS must hold, or null if it holds
+     * none: init, before there is a repository to lock, and the daemon,
+     * whose requests each take their own.
+     * @param args command and operands
+     * @return the lock, held
+     */
+    private RepoLock.Held lockfor(String... args) {
+        shared = false;
+        if (args.length == 0 || args[0].equals("init")
+            || args[0].equals("daemon") || !mainfolder.isDirectory()) {
+            return null;
+        }
+        shared = READERS.contains(args[0]);
+        RepoLock.Held held = repolock.acquire(shared, RepoLock.TIMEOUT);
+        if (shared && args[0].equals("find")
+            && !MessageIndex.current(messagefile, messageindexfile)) {
+            held.close();
+            shared = false;
+            held = repolock.acquire(false, RepoLock.TIMEOUT);
+        }
+        return held;
+    }
+
+    /**
+     * Write the state the current command saved, if it did, to the
+     * journal.
+     */
+    private void flushstate() {
+        if (statesaved) {
+            journal.save(state);
+            statesaved = false;
+        }
+    }
+
+    /**
+     * Save the stat cache a reader brought up to date, if the lock is
+     * free to take exclusive.  It is only a cache, so it is not worth
+     * waiting for.
+     */
+    private void savestatindex() {
+        if (statindex == null) {
+            return;
+        }
+        try (RepoLock.Held held = repolock.tryAcquire(false)) {
+            if (held != null) {
+                statindex.save();
+            }
+        }
+    }
+
+    /**
+     *
+     * @param args command and operands to check and run
+     */
+    private void dispatch(String... args) {
+        if (args.length == 0) {
+            exitWithError("Must have at least one argument");
+        }
+        mainerror(args);
+        switch (args[0]) {
+        case "init":
+            doinit(); break;
+        case "commit":
+            Date date = new Date();
+            docommit(args, date, false, null, null); break;
+        case "add":
+            doadd(args); break;
+        case "log":
+            dolog(args); break;
+        case "checkout":
+            docheckout(args); break;
+        case "rm":
+            dorm(args); break;
+        case "global-log":
+            dogloballog(args); break;
+        case "branch":
+            dobranch(args); break;
+        case "find":
+            dofind(args); break;
+        case "status":
+            dostatus(args); break;
+        case "rm-branch":
+            dormbranch(args); break;
+        case "reset":
+            doreset(args, true); break;
+        case "merge":
+            domerge(args); break;
+        case "repack":
+            dorepack(args); break;
+        case "rehash-blobs":
+            dorehashblobs(args); break;
+        case "shard-objects":
+            doshardobjects(args); break;
+        case "daemon":
+            dodaemon(args); break;
+        case "diff":
+            dodiff(args); break;
+        default:
+            exitWithError("No command with that name exists.");
+        }
+    }
+
+    /**
+     *
+     * @param args arguments
+     */
+    void mainerror(String[] args) {
+        switch (args[0]) {
+        case "init":
+        case "repack":
+        case "rehash-blobs":
+        case "shard-objects":
+            if (args.length != 1) {
+                exitWithError("Incorrect operands.");
+            }
+            break;
+        case "daemon":
+            if (args.length > 2
+                    || args.length == 2 && !args[1].equals("stop")) {
+                exitWithError("Incorrect operands.");
+            }
+            break;
+        case "commit":
+            if (args.length > 2) {
+                exitWithError("Incorrect operands.");
+            } else if (args[1].equals("")) {
+                exitWithError("Please enter a commit message.");
+            }
+            break;
+        case "find":
+            if (args.length == 3 ? !args[1].equals("--grep")
+                    : args.length != 2) {
+                exitWithError("Incorrect operands.");
+            }
+            break;
+        case "add":
+        case "merge":
+        case "reset":
+        case "rm-branch":
+        case "branch":
+        case "rm":
+            if (args.length > 2) {
+                exitWithError("Incorrect operands.");
+            }
+            break;
+        case "log":
+            new LogOptions(args);
+            break;
+        case "status":
+            if (args.length > 1) {
+                exitWithError("Incorrect operands.");
+            }
+            break;
+        case "diff":
+            if ((Arrays.asList(args).contains("--")
+                    ? Arrays.asList(args).indexOf("--") : args.length) > 3) {
+                exitWithError("Incorrect operands.");
+            }
+            break;
+        case "global-log":
+            if (args.length % 2 == 0) {
+                exitWithError("Incorrect operands.");
+            }
+            for (int i = 1; i < args.length; i += 2) {
+                if (!args[i].equals("--skip") && !args[i].equals("--limit")
+                        || !args[i + 1].matches("[0-9]{1,9}")) {
+                    exitWithError("Incorrect operands.");
+                }
+            }
+            break;
+        case "checkout":
+            if (args.length > 4 || args.length < 2) {
+                exitWithError("Incorrect operands.");
+            } else if (args.length == 4 && !args[2].equals("--")) {
+                exitWithError("Incorrect operands.");
+            } else if (args.length == 3 && !args[1].equals("--")) {
+                exitWithError("Incorrect operands.");
+            }
+            break;
+        default:
+            exitWithError("No command with that name exists.");
+        }
+    }
+
+    /**
+     * Print a message composed from MSG and ARGS as for String.format to
+     * the standard error, if verbose output was asked for.
+     * @param msg format of the message
+     * @param args arguments of the message
+     */
+    void verbose(String msg, Object... args) {
+        if (VERBOSE) {
+            err.println(String.format(msg, args));
+        }
+    }
+
+    /**
+     * End the current command, printing MESSAGE unless it is empty.
+     * @param message error message
+     */
+    static void exitWithError(String message) {
+        throw new GitletException(message);
+    }
+
+    /**
+     * Only the init that creates .gitlet goes on, and it holds the lock
+     * exclusive from then until its state is written, so no other
+     * command sees the repository half made.
+     */
+    void doinit() {
+        root.mkdirs();
+        if (!mainfolder.mkdir()) {
+            exitWithError("A Gitlet version-control"
+                    +
+                    " system already exists in the current directory.");
+        }
+        try (RepoLock.Held held = repolock.acquire(false, RepoLock.TIMEOUT)) {
+            stagefolder.mkdirs();
+            commitfolder.mkdirs();
+            statefolder.mkdirs();
+            blobfolder.mkdirs();
+            rmfolder.mkdirs();
+            packfolder.mkdirs();
+            Utils.writeContents(contentids, "");
+            commitstore.shard();
+            treestore.shard();
+            blobstore.shard();
+            MessageIndex.create(messagefile);
+            Date inidate = new Date(0);
+            String inimessage = "initial commit";
+            String[] ini = {"commit", inimessage};
+            Commit cm = docommit(ini, inidate, true, null, null);
+            CState state = new CState();
+            cm.setP("null");
+            savecommit(cm);
+            recordcommit(cm);
+            state.setCommitsha1(cm.sha1());
+            state.setCurrentbranch("master");
+            state.putbranch("master");
+            savestate(state);
+            flushstate();
+        }
+    }
+
+    /**
+     *
+     * @param args arguments
+     * @param date time now
+     * @param first init or not
+     * @param branchid given branch
+     * @param curid current branch
+     * @return new commit
+     */
+    Commit docommit(String[] args,
+                                  Date date, boolean first,
+                                  String branchid, String curid) {
+        if (first) {
+            return new Commit(date, args[1], commitfolder);
+        }
+        CState oldstate = readstate();
+        Commit old = getcommit(oldstate.getCommitsha1());
+        Commit cm = old.createChild(date, args[1]);
+        List<String> dir = Utils.plainFilesUnder(stagefolder, null);
+        cm.setP(old.sha1());
+        if (oldstate.getRmfiles().isEmpty() && dir.size() == 0) {
+            exitWithError("No changes added to the commit.");
+        }
+        for (String key: oldstate.getRmfiles().keySet()) {
+            cm.removefile(key);
+            Utils.deleteUnder(rmfolder, key);
+        }
+        String[] blobs = stageblobs(dir, old);
+        for (int k = 0; k < blobs.length; k += 1) {
+            cm.addfiles(dir.get(k), blobs[k]);
+        }
+        for (String name: dir) {
+            Utils.deleteUnder(stagefolder, name);
+        }
+        if (branchid != null && curid != null) {
+            cm.setP(curid);
+            cm.setSubparent(branchid);
+        } else {
+            cm.setSubparent(old.getSubparent());
+        }
+        savecommit(cm);
+        recordcommit(cm);
+        CState state = readstate();
+        state.cleanuprmfiles();
+        List<String> dir2 = Utils.plainFilesUnder(rmfolder, null);
+        if (dir2 != null) {
+            for (String ele: dir2) {
+                Utils.deleteUnder(rmfolder, ele);
+            }
+        }
+        state.setCommitsha1(cm.sha1());
+        state.putbranch(state.getCurrentbranch());
+        savestate(state);
+        return cm;
+    }
+
+    /**
+     * Store each of the staged files NAMES as a blob, hashing and writing
+     * up to THREADS of them at once.  The ids are returned by position,
+     * so the commit built from them does not depend on which finished
+     * first.
+     * @param names staged files
+     * @param old parent commit, whose blobs new ones may be deltas against
+     * @return the blob id of each of NAMES, in the same order
+     */
+    String[] stageblobs(List<String> names, Commit old) {
+        String[] result = new String[names.size()];
+        boolean contentonly = contentids.exists();
+        IntConsumer store = k -> {
+            String name = names.get(k);
+            result[k] = blobstore.writeFile(contentonly ? "" : name,
+                    Utils.join(stagefolder, name), old.blob(name));
+        };
+        if (THREADS <= 1 || result.length <= 1) {
+            IntStream.range(0, result.length).forEach(store);
+            return result;
+        }
+        ForkJoinPool pool = new ForkJoinPool(THREADS);
+        try {
+            pool.submit(() -> IntStream.range(0, result.length).parallel()
+                    .forEach(store)).get();
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+        return result;
+    }
+
+    /**
+     *
+     * @param id id of a stored commit
+     * @return that commit
+     */
+    Commit getcommit(String id) {
+        return Commit.fromFile(commitstore, treestore, id);
+    }
+
+    /**
+     * Save CM with the trees it does not share with stored commits, in a
+     * tree folder made here if the repository was made without one.
+     * @param cm new commit
+     */
+    void savecommit(Commit cm) {
+        if (!treefolder.isDirectory()) {
+            treestore.shard();
+        }
+        cm.saveCommit(commitstore, treestore);
+    }
+
+    /**
+     *
+     * @return the paths of all working files, sorted
+     */
+    List<String> workingfiles() {
+        return Utils.plainFilesUnder(root, mainfolder.getName());
+    }
+
+    /**
+     *
+     * @param required ids that must be in the graph
+     * @return the commit graph, rebuilt if it is missing or stale
+     */
+    CommitGraph commitgraph(String... required) {
+        return CommitGraph.open(graphfile, commitstore, required);
+    }
+
+    /**
+     *
+     * @param abbrev a commit id, or a prefix of one
+     * @return the id of the one commit that ABBREV is a prefix of
+     */
+    String resolveid(String abbrev) {
+        if (abbrev.length() == Utils.UID_LENGTH) {
+            if (!commitstore.contains(abbrev)) {
+                exitWithError("No commit with that id exists.");
+            }
+            return abbrev;
+        }
+        CommitGraph graph = commitgraph();
+        int[] range = graph.prefixRange(abbrev);
+        if (abbrev.isEmpty() || range[0] == range[1]) {
+            exitWithError("No commit with that id exists.");
+        } else if (range[1] - range[0] > 1) {
+            StringBuilder msg = new StringBuilder(
+                    "More than one commit has an id starting with "
+                    + abbrev + ":");
+            for (int i = range[0];
+                 i < range[1] && i < range[0] + CANDIDATES; i += 1) {
+                String id = graph.id(i);
+                msg.append(String.format("%n  %s %s",
+                        graph.abbreviate(id, ABBREV),
+                        getcommit(id).getMessage()));
+            }
+            if (range[1] - range[0] > CANDIDATES) {
+                msg.append(String.format("%n  and %d more",
+                        range[1] - range[0] - CANDIDATES));
+            }
+            exitWithError(msg.toString());
+        }
+        return graph.id(range[0]);
+    }
+
+    /**
+     *
+     * @param id id of a commit
+     * @return the shortest prefix of ID, and at least ABBREV digits of it,
+     *         that is the prefix of no other commit
+     */
+    String abbreviate(String id) {
+        return commitgraph(id).abbreviate(id, ABBREV);
+    }
+
+    /**
+     *
+     * @param cm newly saved commit to add to the commit graph
+     */
+    void recordcommit(Commit cm) {
+        commitgraph().add(graphfile, commitstore, cm.sha1(),
+                cm.parents(), cm.getDate().getTime());
+        MessageIndex.append(messagefile, messageindexfile, cm.sha1(),
+                cm.getMessage());
+    }
+
+    /**
+     * The state is read once per command and saved when it ends.
+     * @return the state as last saved, to change freely
+     */
+    CState readstate() {
+        if (state == null) {
+            state = journal.read();
+        }
+        return CState.decode(state);
+    }
+
+    /**
+     * Save CS, which the rest of the current command reads, and which
+     * is journaled when the command ends as one record.
+     * @param cs new state
+     */
+    void savestate(CState cs) {
+        state = cs.encode();
+        statesaved = true;
+    }
+
+    /**
+     *
+     * @param name name of a file
+     * @return what is hashed ahead of its contents to give its blob id:
+     *         nothing, or its name in repositories made before blob ids
+     *         depended only on contents
+     */
+    String blobkey(String name) {
+        return contentids.exists() ? "" : name;
+    }
+
+    /**
+     *
+     * @return the stat cache of the working files
+     */
+    StatIndex statindex() {
+        if (statindex == null) {
+            statindex = new StatIndex(indexfile);
+        }
+        return statindex;
+    }
+
+    /**
+     *
+     * @param name name of a working file
+     * @return its blob id, or null if it does not exist
+     */
+    String workingid(String name) {
+        return statindex().id(name, Utils.join(root, name), blobkey(name));
+    }
+
+    /**
+     *
+     * @param name name of a staged file
+     * @return its blob id, as recorded in the stat cache when it was
+     *         staged, or hashed again if the staged copy has changed
+     */
+    String stagedid(String name) {
+        return statindex().id(stagekey(name), Utils.join(stagefolder, name),
+                blobkey(name));
+    }
+
+    /**
+     *
+     * @param name name of a staged file
+     * @return the name the stat cache records its staged copy under: its
+     *         path in the working folder, which no working file can have
+     */
+    String stagekey(String name) {
+        return mainfolder.getName() + "/" + stagefolder.getName() + "/"
+                + name;
+    }
+
+    /**
+     *
+     * @param name name of a working file
+     * @param id blob to write it from
+     */
+    void materialize(String name, String id) {
+        File file = Utils.join(root, name);
+        file.getParentFile().mkdirs();
+        blobstore.copyTo(id, file);
+        statindex().record(name, file, id);
+    }
+
+    /**
+     * Write every file named in FILES into DIR from its blob, on up to
+     * THREADS threads.  Each write is attempted even if others fail.
+     * @param blobs store to read the blobs from
+     * @param dir folder to write the files into
+     * @param files blob id of each file to write
+     * @param threads largest number of files written at once
+     * @param index stat cache that records each file written, or null
+     * @return the names of the files that could not be written, sorted
+     */
+    static List<String> writefiles(BlobStore blobs, File dir,
+                                   Map<String, String> files, int threads,
+                                   StatIndex index) {
+        List<Map.Entry<String, String>> work = new ArrayList<>(
+                files.entrySet());
+        AtomicInteger next = new AtomicInteger();
+        Queue<String> failed = new ConcurrentLinkedQueue<>();
+        Runnable worker = () -> {
+            for (int i = next.getAndIncrement(); i < work.size();
+                 i = next.getAndIncrement()) {
+                String name = work.get(i).getKey();
+                File file = Utils.join(dir, name);
+                try {
+                    file.getParentFile().mkdirs();
+                    blobs.copyTo(work.get(i).getValue(), file);
+                    if (index != null) {
+                        index.record(name, file, work.get(i).getValue());
+                    }
+                } catch (RuntimeException excp) {
+                    failed.add(name);
+                }
+            }
+        };
+        int n = Math.min(threads, work.size());
+        if (n <= 1) {
+            worker.run();
+        } else {
+            Thread[] pool = new Thread[n];
+            for (int k = 0; k < n; k += 1) {
+                pool[k] = new Thread(worker, "gitlet-writer-" + k);
+                pool[k].start();
+            }
+            boolean interrupted = false;
+            for (Thread t : pool) {
+                while (t.isAlive()) {
+                    try {
+                        t.join();
+                    } catch (InterruptedException excp) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<String> result = new ArrayList<>(failed);
+        result.sort(null);
+        return result;
+    }
+
+    /**
+     *
+     * @param args arguments
+     */
+    void doadd(String[] args) {
+        boolean check = true;
+        CState currentstate = readstate();
+        String headsha1 = currentstate.getCommitsha1();
+        File stageFile = Utils.join(stagefolder, args[1]);
+        File originFile = Utils.join(root, args[1]);
+        if (!trackable(args[1]) || !originFile.isFile()) {
+            exitWithError("File does not exist.");
+        }
+        String content =
+                statindex().id(args[1], originFile, blobkey(args[1]));
+        if (!headsha1.equals("null")) {
+            Commit headcommit = getcommit(headsha1);
+            if (content.equals(headcommit.blob(args[1]))) {
+                check = false;
+                if (stageFile.exists()) {
+                    String stagecontent = stagedid(args[1]);
+                    if (stagecontent.equals(content)) {
+                        Utils.deleteUnder(stagefolder, args[1]);
+                        statindex().forget(stagekey(args[1]));
+                    }
+                }
+            }
+        }
+        if (currentstate.getRmfiles().containsKey(args[1])) {
+            String rmcontent = currentstate.getRmfiles().get(args[1]);
+            if (rmcontent.equals(content)) {
+                currentstate.removermfile(args[1]);
+                Utils.deleteUnder(rmfolder, args[1]);
+                savestate(currentstate);
+            }
+        }
+        if (check) {
+            copyfile(originFile, stageFile);
+            statindex().record(stagekey(args[1]), stageFile, content);
+        }
+        statindex().save();
+        savestate(currentstate);
+    }
+
+    /**
+     *
+     * @param name path of a file, relative to the working folder
+     * @return true iff NAME is a path as workingfiles gives them, of a
+     *         file that may be tracked
+     */
+    boolean trackable(String name) {
+        String[] parts = name.split("/", -1);
+        if (parts[0].equals(mainfolder.getName())) {
+            return false;
+        }
+        for (String part : parts) {
+            if (part.isEmpty() || part.equals(".") || part.equals("..")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     *
+     * @param args arguments
+     */
+    void dolog(String[] args) {
+        LogOptions opts = new LogOptions(args);
+        SimpleDateFormat format = new
+                SimpleDateFormat("E MMM dd HH:mm:ss yyyy Z");
+        String head = readstate().getCommitsha1();
+        CommitGraph graph = commitgraph(head);
+        CommitGraph.Walk walk = graph.walk(graph.find(head),
+                opts.allParents, opts.dateOrder, opts.since);
+        int printed = 0;
+        for (int i = walk.next(); i != CommitGraph.NONE
+                 && printed < opts.count; i = walk.next()) {
+            if (graph.date(i) > opts.until) {
+                continue;
+            }
+            String id = graph.id(i);
+            if (printed > 0) {
+                out.println();
+            }
+            out.println("===");
+            out.println("commit " + id);
+            out.println("Date: " + format.format(new Date(graph.date(i))));
+            out.println(Commit.message(commitstore, id));
+            printed += 1;
+        }
+    }
+
+    /** Options of the log command. */
+    private static final class LogOptions {
+        /** Accepted forms of the dates given to --since and --until. */
+        private static final String[] DATE_FORMATS = {
+            "yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd'T'HH:mm:ss", "yyyy-MM-dd",
+        };
+
+        /** True iff every parent is followed, not just main parents. */
+        private boolean allParents;
+        /** True iff commits are ordered by date alone. */
+        private boolean dateOrder;
+        /** Most commits printed. */
+        private int count = Integer.MAX_VALUE;
+        /** Earliest commit time printed, in milliseconds. */
+        private long since = Long.MIN_VALUE;
+        /** Latest commit time printed, in milliseconds. */
+        private long until = Long.MAX_VALUE;
+
+        /** The options given in ARGS, the arguments of log. */
+        LogOptions(String[] args) {
+            for (int i = 1; i < args.length; i += 1) {
+                boolean hasvalue = i + 1 < args.length;
+                switch (args[i]) {
+                case "--all-parents":
+                    allParents = true;
+                    break;
+                case "--date-order":
+                    allParents = true;
+                    dateOrder = true;
+                    break;
+                case "-n":
+                    if (!hasvalue || !args[i + 1].matches("[0-9]{1,9}")) {
+                        exitWithError("Incorrect operands.");
+                    }
+                    i += 1;
+                    count = Integer.parseInt(args[i]);
+                    break;
+                case "--since":
+                case "--until":
+                    if (!hasvalue) {
+                        exitWithError("Incorrect operands.");
+                    }
+                    long time = parsedate(args[i + 1]);
+                    if (args[i].equals("--since")) {
+                        since = time;
+                    } else {
+                        until = time;
+                    }
+                    i += 1;
+                    break;
+                default:
+                    exitWithError("Incorrect operands.");
+                }
+            }
+        }
+
+        /** Return the time in milliseconds of the local date TEXT. */
+        private static long parsedate(String text) {
+            for (String pattern : DATE_FORMATS) {
+                SimpleDateFormat format = new SimpleDateFormat(pattern);
+                format.setLenient(false);
+                ParsePosition at = new ParsePosition(0);
+                Date date = format.parse(text, at);
+                if (date != null && at.getIndex() == text.length()) {
+                    return date.getTime();
+                }
+            }
+            throw Utils.error("Incorrect operands.");
+        }
+    }
+
+    /**
+     *
+     * @param args arguments
+     */
+    void docheckout(String[] args) {
+        if (args.length == 2) {
+            CState currentstate = readstate();
+            if (currentstate.getCurrentbranch().equals(args[1])) {
+                exitWithError("No need to checkout the current branch.");
+            } else if (!currentstate.getbranches().containsKey(args[1])) {
+                exitWithError("No such branch exists.");
+            } else {
+                String branchname = args[1];
+                String branchcommitid =
+                        currentstate.getbranchwithname(branchname);
+                String[] input = {"checkout", branchcommitid};
+                doreset(input, false);
+                CState currentstate2 = readstate();
+                currentstate2.setCurrentbranch(branchname);
+                currentstate2.putbranch(branchname, branchcommitid);
+                savestate(currentstate2);
+            }
+
+        } else if (args[1].equals("--") && args.length == 3) {
+            String filename = args[2];
+            CState currentstate = readstate();
+            String csha1 = currentstate.getCommitsha1();
+            Commit newestcommit = getcommit(csha1);
+            String blob = newestcommit.blob(filename);
+            if (blob != null) {
+                materialize(filename, blob);
+                statindex().save();
+            } else {
+                exitWithError("File does not exist in that commit.");
+            }
+            savestate(currentstate);
+        } else if (args[2].equals("--") && args.length == 4) {
+            partcheckout(args);
+        }
+    }
+
+    /**
+     *
+     * @param args arguments
+     */
+    void partcheckout(String[] args) {
+        String commitid = resolveid(args[1]);
+        String filename = args[3];
+        Commit commitfile = getcommit(commitid);
+        List<String> allfilesworking = workingfiles();
+        CState currentstate = readstate();
+        String currentcommitsha1 = currentstate.getCommitsha1();
+        Commit currentcommit = getcommit(currentcommitsha1);
+        String blob = commitfile.blob(filename);
+        if (blob != null) {
+            if (allfilesworking != null) {
+                for (String workingfile: allfilesworking) {
+                    if (!currentcommit.getFiles().
+                            containsKey(workingfile)) {
+                        if (commitfile.getFiles().
+                                containsKey(workingfile)) {
+                            exitWithError("There is an "
+                                    + "untracked file in the way;"
+                                    + " delete it or add it first.");
+                        }
+                    }
+                }
+            }
+            materialize(filename, blob);
+            statindex().save();
+        } else {
+            exitWithError("File does not exist in that commit.");
+        }
+    }
+
+    /**
+     *
+     * @param args arguments
+     */
+    void dorm(String[] args) {
+        boolean check = true;
+        List<String> stagenames = Utils.plainFilesUnder(stagefolder, null);
+        if (stagenames != null && stagenames.contains(args[1])) {
+            Utils.deleteUnder(stagefolder, args[1]);
+            check = false;
+        }
+        CState currentstate = readstate();
+        String csha1 = currentstate.getCommitsha1();
+        Commit newestcommit = getcommit(csha1);
+        String blobcontent = newestcommit.blob(args[1]);
+        if (blobcontent != null) {
+            check = false;
+            currentstate.savermfiles(args[1], blobcontent);
+            File rmFile = Utils.join(rmfolder, args[1]);
+            rmFile.getParentFile().mkdirs();
+            blobstore.copyTo(blobcontent, rmFile);
+            Utils.deleteUnder(root, args[1]);
+            savestate(currentstate);
+        }
+        if (check) {
+            exitWithError("No reason to remove the file.");
+        }
+        savestate(currentstate);
+    }
+
+    /**
+     *
+     * @param args arguments
+     */
+    void dogloballog(String[] args) {
+        int skip = 0, limit = Integer.MAX_VALUE;
+        for (int i = 1; i < args.length; i += 2) {
+            int n = Integer.parseInt(args[i + 1]);
+            if (args[i].equals("--skip")) {
+                skip = n;
+            } else {
+                limit = n;
+            }
+        }
+        CommitGraph graph = commitgraph();
+        SimpleDateFormat format = new
+                SimpleDateFormat("E MMM dd HH:mm:ss yyyy Z");
+        int end = (int) Math.min(graph.size(), (long) skip + limit);
+        for (int i = skip; i < end; i += 1) {
+            String id = graph.id(i);
+            if (i != skip) {
+                out.println();
+            }
+            out.println("===");
+            out.println("commit " + id);
+            int[] parents = graph.parents(i);
+            if (parents.length > 1) {
+                out.println("Merge: "
+                        + graph.id(parents[0]).substring(0, 6)
+                        + graph.id(parents[1]).substring(0, 6));
+            }
+            String formattime = format.format(new Date(graph.date(i)));
+            out.println("Date: " + formattime);
+            out.println(Commit.message(commitstore, id));
+        }
+    }
+
+    /**
+     *
+     * @param args arguments
+     */
+    void dobranch(String[] args) {
+        CState currentstate = readstate();
+        if (currentstate.getbranches().containsKey(args[1])) {
+            exitWithError("A branch with that name already exists.");
+        }
+        currentstate.putbranch(args[1]);
+        savestate(currentstate);
+    }
+
+    /**
+     *
+     * @param args arguments
+     */
+    void dofind(String[] args) {
+        MessageIndex index = MessageIndex.open(messagefile,
+                messageindexfile, commitstore);
+        List<String> found = args.length == 3 ? index.grep(args[2])
+                : index.find(args[1]);
+        if (found.isEmpty()) {
+            exitWithError("Found no commit with that message.");
+        }
+        for (String id : found) {
+            out.println(id);
+        }
+    }
+
+    /**
+     *
+     * @param args arguments
+     */
+    void dostatus(String[] args) {
+        out.println("=== Branches ===");
+        CState currentstate = readstate();
+        String currentbranch = currentstate.getCurrentbranch();
+        Set<String> lst = currentstate.getbranches().keySet();
+        int thesize = lst.size();
+        String[] lstbranches = new String[thesize];
+        int i = 0;
+        for (String ele: lst) {
+            lstbranches[i] = ele;
+            i++;
+        }
+
+        Arrays.sort(lstbranches);
+        for (String key : lstbranches) {
+            if (!currentbranch.equals(key)) {
+                out.println(key);
+            } else {
+                out.println("*" + key);
+            }
+        }
+        out.println();
+        out.println("=== Staged Files ===");
+        List<String> stagefiles = Utils.plainFilesUnder(stagefolder, null);
+        if (stagefiles != null) {
+            for (String ele: stagefiles) {
+                out.println(ele);
+            }
+        }
+        out.println();
+        out.println("=== Removed Files ===");
+        List<String> rmfiles = Utils.plainFilesUnder(rmfolder, null);
+        if (rmfiles != null) {
+            for (String ele: rmfiles) {
+                out.println(ele);
+            }
+        }
+
+        out.println();
+        out.println("=== Modifications Not Staged For Commit ===");
+        FileMap tracked = tracked(getcommit(currentstate.getCommitsha1()));
+        for (Map.Entry<String, String[]> e:
+                 FileMap.diff(tracked, working(tracked)).entrySet()) {
+            out.println(e.getKey() + (e.getValue()[1] == null
+                    ? " (deleted)" : " (modified)"));
+        }
+        out.println();
+        out.println("=== Untracked Files ===");
+        for (String ele: workingfiles()) {
+            if (!tracked.containsKey(ele)) {
+                out.println(ele);
+            }
+        }
+    }
+
+    /**
+     *
+     * @param args arguments
+     */
+    void dormbranch(String[] args) {
+        CState currentstate = readstate();
+        if (!currentstate.getbranches().containsKey(args[1])) {
+            exitWithError("A branch with that name does not exist.");
+        } else if (currentstate.getCurrentbranch().equals(args[1])) {
+            exitWithError("Cannot remove the current branch.");
+        } else {
+            currentstate.removebranch(args[1]);
+        }
+        savestate(currentstate);
+    }
+
+    /**
+     *
+     * @param args arguments
+     * @param just nothing for checking
+     */
+    void doreset(String[] args, boolean just) {
+        CState currentstate = readstate();
+        String currentcommitsha1 = currentstate.getCommitsha1();
+        Commit currentcommit = getcommit(currentcommitsha1);
+        String givenid = resolveid(args[1]);
+        Commit givencommit = getcommit(givenid);
+        Map<String, String[]> changes =
+                Commit.diff(currentcommit, givencommit);
+        TreeMap<String, String> towrite = new TreeMap<>();
+        for (Map.Entry<String, String[]> e: changes.entrySet()) {
+            String[] ids = e.getValue();
+            if (ids[0] == null && Utils.join(root, e.getKey()).isFile()) {
+                exitWithError("There is an untracked file in the way;"
+                        + " delete it or add it first.");
+            } else if (ids[1] != null) {
+                towrite.put(e.getKey(), ids[1]);
+            }
+        }
+        for (Map.Entry<String, String> e: givencommit.getFiles().entrySet()) {
+            String originname = e.getKey();
+            if (!changes.containsKey(originname)
+                    && !e.getValue().equals(workingid(originname))) {
+                towrite.put(originname, e.getValue());
+            }
+        }
+        int touched = 0;
+        List<String> todelete = new ArrayList<>();
+        for (Map.Entry<String, String[]> e: changes.entrySet()) {
+            String name = e.getKey();
+            if (e.getValue()[1] != null) {
+                continue;
+            }
+            if (blocks(name, towrite)) {
+                touched += removeworking(name);
+            } else {
+                todelete.add(name);
+            }
+        }
+        List<String> failed =
+                writefiles(blobstore, root, towrite, THREADS, statindex());
+        if (!failed.isEmpty()) {
+            statindex().save();
+            exitWithError("Could not write " + String.join(", ", failed)
+                    + "; the working files are partly reset, but the"
+                    + " current commit is unchanged.");
+        }
+        for (String name: todelete) {
+            touched += removeworking(name);
+        }
+        statindex().save();
+        touched += towrite.size();
+        verbose("%s: %d of %d files written or deleted", args[0], touched,
+                givencommit.getFiles().size());
+        currentstate.setCommitsha1(givenid);
+        if (just) {
+            currentstate.putbranch(currentstate.gcur(), givenid);
+        }
+        List<String> temp1 = Utils.plainFilesUnder(stagefolder, null);
+        for (String ele: temp1) {
+            Utils.deleteUnder(stagefolder, ele);
+        }
+        stagefolder.delete();
+        stagefolder.mkdir();
+        savestate(currentstate);
+    }
+
+    /**
+     *
+     * @param name name of a working file
+     * @param files names of files to be written, sorted
+     * @return true iff NAME is in the way of one of FILES: it is a
+     *         folder of one, or one is a folder of it
+     */
+    static boolean blocks(String name, TreeMap<String, String> files) {
+        String within = files.ceilingKey(name + "/");
+        if (within != null && within.startsWith(name + "/")) {
+            return true;
+        }
+        for (int k = name.lastIndexOf('/'); k > 0;
+             k = name.lastIndexOf('/', k - 1)) {
+            if (files.containsKey(name.substring(0, k))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     *
+     * @param name name of a working file
+     * @return 1 if NAME was deleted, else 0
+     */
+    int removeworking(String name) {
+        statindex().forget(name);
+        return Utils.deleteUnder(root, name) ? 1 : 0;
+    }
+
+    /**
+     *
+     * @param args arguments
+     */
+    void somemergeerror(String[] args) {
+        CState currentstate = readstate();
+        List<String> rmfiles = Utils.plainFilesUnder(rmfolder, null);
+        List<String> stagefiles = Utils.plainFilesUnder(stagefolder, null);
+        if (rmfiles.size() != 0 || stagefiles.size() != 0) {
+            exitWithError("You have uncommitted changes.");
+        }
+        if (!currentstate.getbranches().containsKey(args[1])) {
+            int[] range = commitgraph().prefixRange(args[1]);
+            if (args[1].isEmpty() || range[0] == range[1]) {
+                exitWithError("A branch with that name does not exist.");
+            }
+        }
+    }
+
+    /**
+     *
+     * @param state current state
+     * @param given branch, or commit id or prefix of one, to merge
+     * @return the id of the commit GIVEN names
+     */
+    String mergeid(CState state, String given) {
+        String id = state.getbranchwithname(given);
+        return id != null ? id : resolveid(given);
+    }
+
+    /**
+     *
+     * @param args input arguments
+     */
+    void domerge(String[] args) {
+        boolean checkconflict = false;
+        CState currentstate = readstate();
+        String headname = currentstate.getCurrentbranch();
+        String head = currentstate.getCommitsha1();
+        somemergeerror(args);
+        if (headname.equals(args[1])) {
+            exitWithError("Cannot merge a branch with itself.");
+        }
+        String branchid = mergeid(currentstate, args[1]);
+        CommitGraph graph = commitgraph(head, branchid);
+        if (graph.isAncestor(branchid, head)) {
+            exitWithError("Given branch is an "
+                    + "ancestor of the current branch.");
+        }
+        if (graph.isAncestor(head, branchid)) {
+            if (currentstate.getbranches().containsKey(args[1])) {
+                docheckout(new String[] {"checkout", args[1]});
+            } else {
+                doreset(new String[] {"reset", branchid}, true);
+            }
+            exitWithError("Current branch fast-forwarded.");
+        }
+        String leastans = new MergeBase(graph.parentLookup(commitstore),
+                                        graph.generationLookup())
+                .find(head, branchid);
+        checkconflict = partmerge(leastans, args, checkconflict);
+        checkconflict = secondmerge(leastans, args, checkconflict);
+        Date date = new Date();
+        String[] commitmessage =
+                mergemessage(currentstate.getCurrentbranch(), args);
+        docommit(commitmessage, date, false,
+                branchid, currentstate.getCommitsha1());
+        if (checkconflict) {
+            out.println("Encountered a merge conflict. ");
+        }
+    }
+
+    /**
+     *
+     * @param leastans split point
+     * @param args arguments
+     * @param checkconflict checkcomflict need to be updated
+     * @return new checkconflict
+     */
+    boolean secondmerge(String leastans,
+                                      String[] args, boolean checkconflict) {
+        CState currentstate = readstate();
+        Commit headcommit = getcommit(currentstate.getCommitsha1());
+        String branchid = mergeid(currentstate, args[1]);
+        Commit branchcommit = getcommit(branchid);
+        Commit anscommit = getcommit(leastans);
+        Map<String, String[]> changed =
+                Commit.diff(anscommit, branchcommit);
+        for (Map.Entry<String, String[]> e: changed.entrySet()) {
+            String ele = e.getKey();
+            boolean inbranch = e.getValue()[1] != null;
+            if (e.getValue()[0] == null) {
+                continue;
+            }
+            if (headcommit.blob(ele) != null) {
+                boolean A = checkmodi(headcommit, anscommit, ele);
+                if (!A && !inbranch) {
+                    String[] rmdata = {"rm", ele};
+                    dorm(rmdata);
+                }
+                if (inbranch) {
+                    boolean B = checkmodi(headcommit, branchcommit, ele);
+                    boolean C = checkmodi(anscommit, branchcommit, ele);
+                    if (A && B && C) {
+                        doconflict(ele, headcommit, branchcommit);
+                        checkconflict = true;
+                    }
+                } else {
+                    if (A) {
+                        doconflict(ele, headcommit, branchcommit);
+                        checkconflict = true;
+                    }
+                }
+            } else {
+                boolean C = inbranch
+                        && checkmodi(anscommit, branchcommit, ele);
+                if (C) {
+                    doconflict(ele, headcommit, branchcommit);
+                    checkconflict = true;
+                }
+            }
+        }
+        return checkconflict;
+    }
+
+    /**
+     *
+     * @param leastans split point
+     * @param args arguments
+     * @param checkconflict checkcomflict need to be updated
+     * @return new checkconflict
+     */
+    boolean partmerge(String leastans,
+                                    String[] args, boolean checkconflict) {
+        CState currentstate = readstate();
+        Commit headcommit = getcommit(currentstate.getCommitsha1());
+        String branchid = mergeid(currentstate, args[1]);
+        Commit branchcommit = getcommit(branchid);
+        Commit anscommit = getcommit(leastans);
+        Map<String, String[]> changed =
+                Commit.diff(anscommit, branchcommit);
+        for (Map.Entry<String, String[]> e: changed.entrySet()) {
+            String ele = e.getKey();
+            boolean inhead = headcommit.blob(ele) != null;
+            if (e.getValue()[1] == null) {
+                continue;
+            }
+            if (e.getValue()[0] != null) {
+                boolean A = checkmodi(anscommit, branchcommit, ele);
+                if (inhead) {
+                    boolean B = checkmodi(headcommit, anscommit, ele);
+                    if (A && !B) {
+                        String[] temp = {"checkout", branchid, "--", ele};
+                        docheckout(temp);
+                        String[] temp2 = {"add", ele};
+                        doadd(temp2);
+                    }
+                }
+            } else {
+                if (!inhead) {
+                    String[] temp = {"checkout", branchid, "--", ele};
+                    docheckout(temp);
+                    String[] temp2 = {"add", ele};
+                    doadd(temp2);
+                } else {
+                    boolean B = checkmodi(headcommit, branchcommit, ele);
+                    if (B) {
+                        doconflict(ele, headcommit, branchcommit);
+                        checkconflict = true;
+                    }
+                }
+            }
+        }
+        return checkconflict;
+    }
+
+    /**
+     *
+     * @param branch current branch
+     * @param args arguments
+     * @return merge message
+     */
+    String[] mergemessage(String branch, String[] args) {
+        String mergemessage = "Merged ";
+        mergemessage += args[1];
+        mergemessage += " into ";
+        mergemessage += branch + ".";
+        String[] commitmessage = {"commit", mergemessage};
+        return commitmessage;
+    }
+    /**
+     *
+     * @param name the name of file
+     * @param cbranch the current branch commit class
+     * @param gbranch the given branch commit class
+     */
+    void doconflict(String name, Commit cbranch, Commit gbranch) {
+        String cblob = cbranch.blob(name);
+        String gblob = gbranch.blob(name);
+        File merge = Utils.join(stagefolder, name);
+        File origin = Utils.join(root, name);
+        merge.getParentFile().mkdirs();
+        try (OutputStream out = new BufferedOutputStream(
+                Files.newOutputStream(merge.toPath()))) {
+            out.write("<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8));
+            if (cblob != null && blobstore.contains(cblob)) {
+                try (InputStream in = blobstore.open(cblob)) {
+                    in.transferTo(out);
+                }
+            }
+            out.write("=======\n".getBytes(StandardCharsets.UTF_8));
+            if (gblob != null && blobstore.contains(gblob)) {
+                try (InputStream in = blobstore.open(gblob)) {
+                    in.transferTo(out);
+                }
+            }
+            out.write(">>>>>>>\n".getBytes(StandardCharsets.UTF_8));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        copyfile(merge, origin);
+    }
+
+    /** Return a boolean that to check whether file is modified or not.
+     *  Blob ids hash only the contents of a file, so two versions of
+     *  one file differ exactly when their ids do.
+     * @FIRSTCOMMIT the first commit class
+     * @SECONDCOMMIT the second commit class
+     * @FILENAME the name of the file in the commit
+     */
+    public static boolean checkmodi(Commit firstcommit,
+                                    Commit secondcommit, String filename) {
+        String firstsha1 = firstcommit.blob(filename);
+        String secondsha1 = secondcommit.blob(filename);
+        return !Objects.equals(firstsha1, secondsha1);
+    }
+
+    /**
+     *
+     * @param from file to copy
+     * @param to file to replace with a copy of FROM
+     */
+    static void copyfile(File from, File to) {
+        to.getParentFile().mkdirs();
+        try {
+            Files.copy(from.toPath(), to.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     *
+     * @param args arguments
+     */
+    void dorepack(String[] args) {
+        commitstore.repack();
+        treestore.repack();
+        blobstore.repack();
+    }
+
+    /**
+     * Move the loose objects of a repository made before objects were
+     * kept in subfolders into them.
+     * @param args arguments
+     */
+    void doshardobjects(String[] args) {
+        verbose("%s: moved %d commits, %d trees and %d blobs", args[0],
+                commitstore.shard(), treestore.shard(), blobstore.shard());
+    }
+
+    /**
+     *
+     * @param head the head commit
+     * @return the blob of each file the next commit would track, as it
+     *         stands: the head's files less those staged for removal,
+     *         and those staged for addition
+     */
+    FileMap tracked(Commit head) {
+        HashMap<String, String> expected = new HashMap<>(head.getFiles());
+        for (String ele: Utils.plainFilesUnder(rmfolder, null)) {
+            expected.remove(ele);
+        }
+        for (String ele: Utils.plainFilesUnder(stagefolder, null)) {
+            expected.put(ele, stagedid(ele));
+        }
+        return FileMap.of(expected);
+    }
+
+    /**
+     *
+     * @param names names of working files
+     * @return the blob id of each of NAMES that exists
+     */
+    FileMap working(Map<String, String> names) {
+        HashMap<String, String> present = new HashMap<>();
+        for (String ele: names.keySet()) {
+            String id = workingid(ele);
+            if (id != null) {
+                present.put(ele, id);
+            }
+        }
+        return FileMap.of(present);
+    }
+
+    /**
+     * Print how files changed, in unified format: from the head commit,
+     * or the commit given, to the tracked working files, or from the
+     * first commit given to the second.  Paths after "--" limit the
+     * files shown to those at or under them.
+     * @param args arguments
+     */
+    void dodiff(String[] args) {
+        List<String> all = Arrays.asList(args);
+        int commits = (all.contains("--") ? all.indexOf("--")
+                : args.length) - 1;
+        List<String> paths = all.subList(commits + 1, args.length);
+        if (!paths.isEmpty()) {
+            paths = paths.subList(1, paths.size());
+        }
+        CState currentstate = readstate();
+        Commit from = getcommit(commits == 0 ? currentstate.getCommitsha1()
+                : mergeid(currentstate, args[1]));
+        Map<String, String[]> changed;
+        if (commits == 2) {
+            changed = Commit.diff(from,
+                    getcommit(mergeid(currentstate, args[2])));
+        } else {
+            FileMap tracked = tracked(
+                    getcommit(currentstate.getCommitsha1()));
+            changed = FileMap.diff(from.getFiles(), working(tracked));
+        }
+        for (Map.Entry<String, String[]> e: changed.entrySet()) {
+            String name = e.getKey();
+            String[] ids = e.getValue();
+            if (!under(name, paths)) {
+                continue;
+            }
+            Supplier<InputStream> after = ids[1] == null ? null
+                    : commits == 2 ? () -> blobstore.open(ids[1])
+                    : () -> openworking(name);
+            Diff.print(name, ids[0] == null ? null
+                    : () -> blobstore.open(ids[0]), after, out);
+        }
+    }
+
+    /**
+     *
+     * @param name a path
+     * @param paths paths, or none
+     * @return true iff NAME is one of PATHS or under one, or PATHS is
+     *         empty
+     */
+    static boolean under(String name, List<String> paths) {
+        for (String path : paths) {
+            String folder = path.endsWith("/") ? path : path + "/";
+            if (name.equals(path) || name.startsWith(folder)) {
+                return true;
+            }
+        }
+        return paths.isEmpty();
+    }
+
+    /**
+     *
+     * @param name name of a working file
+     * @return a stream of its contents
+     */
+    InputStream openworking(String name) {
+        try {
+            return Files.newInputStream(Utils.join(root, name).toPath());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * Serve commands over the daemon's socket until stopped, or with
+     * the operand "stop", stop the running daemon.
+     * @param args arguments
+     */
+    void dodaemon(String[] args) {
+        if (!mainfolder.isDirectory()) {
+            exitWithError("Not in an initialized Gitlet directory.");
+        }
+        if (args.length == 2) {
+            Daemon.stop(socketfile, out, err);
+        } else {
+            Daemon.serve(this, socketfile);
+        }
+    }
+
+    /**
+     * Rewrite every blob under an id of its contents alone, and every
+     * commit and branch to match, so that equal files share one blob.
+     * @param args arguments
+     */
+    void dorehashblobs(String[] args) {
+        if (contentids.exists()) {
+            return;
+        }
+        HashMap<String, String> ids = new HashMap<>();
+        ids.put("null", "null");
+        HashMap<String, String> blobs = new HashMap<>();
+        HashSet<String> trees = new HashSet<>();
+        for (String id : parentsfirst()) {
+            Commit old = getcommit(id);
+            Commit cm = new Commit(old.getDate(), old.getMessage(),
+                    commitfolder);
+            for (Map.Entry<String, String> e : old.getFiles().entrySet()) {
+                cm.addfiles(e.getKey(), rehashblob(e.getValue(), blobs));
+            }
+            cm.setP(ids.get(old.getP()));
+            if (old.getSubparent() != null) {
+                cm.setSubparent(ids.get(old.getSubparent()));
+            }
+            savecommit(cm);
+            cm.tree().ids(trees);
+            ids.put(id, cm.sha1());
+        }
+        CState state = readstate();
+        state.setCommitsha1(ids.get(state.getCommitsha1()));
+        for (Map.Entry<String, String> e : state.getbranches().entrySet()) {
+            e.setValue(ids.get(e.getValue()));
+        }
+        for (Map.Entry<String, String> e : state.getRmfiles().entrySet()) {
+            e.setValue(rehashblob(e.getValue(), blobs));
+        }
+        savestate(state);
+        Utils.writeContents(contentids, "");
+        ids.remove("null");
+        commitstore.retain(new HashSet<>(ids.values()));
+        treestore.retain(trees);
+        blobstore.retain(new HashSet<>(blobs.values()));
+        CommitGraph.delete(graphfile);
+        indexfile.delete();
+        messagefile.delete();
+        messageindexfile.delete();
+        commitgraph();
+    }
+
+    /**
+     *
+     * @param id blob stored under a name-dependent id
+     * @param blobs new ids of the blobs rehashed so far, which ID is
+     *              added to
+     * @return the id of the same contents stored under their own hash
+     */
+    String rehashblob(String id, HashMap<String, String> blobs) {
+        String result = blobs.get(id);
+        if (result == null) {
+            try (InputStream in = blobstore.open(id)) {
+                result = blobstore.write("", in);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            blobs.put(id, result);
+        }
+        return result;
+    }
+
+    /**
+     *
+     * @return the ids of all commits, each after all of its parents
+     */
+    List<String> parentsfirst() {
+        List<String> order = new ArrayList<>();
+        HashSet<String> done = new HashSet<>();
+        ArrayDeque<String> stack = new ArrayDeque<>();
+        for (String root : commitstore.list()) {
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                String id = stack.peek();
+                boolean ready = true;
+                if (!done.contains(id)) {
+                    for (String p : getcommit(id).parents()) {
+                        if (!done.contains(p)) {
+                            stack.push(p);
+                            ready = false;
+                        }
+                    }
+                }
+                if (ready) {
+                    stack.pop();
+                    if (done.add(id)) {
+                        order.add(id);
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    /** Return the id of the current commit. */
+    public String head() {
+        synchronized (lock) {
+            return CState.decode(journal.read()).getCommitsha1();
+        }
+    }
+
+    /** Create a new repository in ROOT. */
+    public void init() {
+        run("init");
+    }
+
+    /** Stage the working file NAME. */
+    public void add(String name) {
+        run("add", name);
+    }
+
+    /** Commit the staged changes with MESSAGE, and return the new
+     *  commit's id. */
+    public String commit(String message) {
+        synchronized (lock) {
+            run("commit", message);
+            return head();
+        }
+    }
+
+    /** Unstage NAME, and stage it for removal if it is tracked. */
+    public void rm(String name) {
+        run("rm", name);
+    }
+
+    /** Print the history of the current commit, as the log command does
+     *  given OPTIONS such as "--all-parents" or "-n", "5". */
+    public void log(String... options) {
+        String[] args = new String[options.length + 1];
+        args[0] = "log";
+        System.arraycopy(options, 0, args, 1, options.length);
+        run(args);
+    }
+
+    /** Print every commit. */
+    public void globalLog() {
+        run("global-log");
+    }
+
+    /** Print LIMIT commits, in the order of global-log, after skipping
+     *  the first SKIP. */
+    public void globalLog(int skip, int limit) {
+        run("global-log", "--skip", Integer.toString(skip), "--limit",
+            Integer.toString(limit));
+    }
+
+    /** Print the ids of the commits whose message is MESSAGE. */
+    public void find(String message) {
+        run("find", message);
+    }
+
+    /** Print the ids of the commits each word of WORDS is part of a word
+     *  of the message of, ignoring case. */
+    public void grep(String words) {
+        run("find", "--grep", words);
+    }
+
+    /** Print the branches, staged and removed files, and the state of
+     *  the working files. */
+    public void status() {
+        run("status");
+    }
+
+    /** Print how files changed, as the diff command does given OPERANDS:
+     *  up to two commits, then "--" and the paths to limit it to. */
+    public void diff(String... operands) {
+        String[] args = new String[operands.length + 1];
+        args[0] = "diff";
+        System.arraycopy(operands, 0, args, 1, operands.length);
+        run(args);
+    }
+
+    /** Make the branch BRANCH current and check out its files. */
+    public void checkout(String branch) {
+        run("checkout", branch);
+    }
+
+    /** Restore the working file NAME from the current commit. */
+    public void checkoutFile(String name) {
+        run("checkout", "--", name);
+    }
+
+    /** Restore the working file NAME from commit ID. */
+    public void checkoutFile(String id, String name) {
+        run("checkout", id, "--", name);
+    }
+
+    /** Create the branch BRANCH at the current commit. */
+    public void branch(String branch) {
+        run("branch", branch);
+    }
+
+    /** Delete the branch BRANCH. */
+    public void rmBranch(String branch) {
+        run("rm-branch", branch);
+    }
+
+    /** Check out commit ID and move the current branch to it. */
+    public void reset(String id) {
+        run("reset", id);
+    }
+
+    /** Return the id of the one commit whose id starts with ABBREV. */
+    public String resolve(String abbrev) {
+        synchronized (lock) {
+            return resolveid(abbrev);
+        }
+    }
+
+    /** Merge the branch BRANCH, or the commit it abbreviates, into the
+     *  current branch. */
+    public void merge(String branch) {
+        run("merge", branch);
+    }
+
+    /** Move all loose objects into the packs. */
+    public void repack() {
+        run("repack");
+    }
+}
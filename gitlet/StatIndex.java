@@ -0,0 +1,230 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/** The stat cache of the working directory.  For each working file whose
+ *  blob id has been computed it records the file's size, modification
+ *  and status-change times and inode along with that id, so that a file
+ *  whose stat still matches need not be read again.  Staged copies are
+ *  recorded the same way, under their paths inside .gitlet, when they
+ *  are staged, so status and diff need not hash them.  As in Git, an entry
+ *  whose file was changed no earlier than the index itself was written
+ *  is "racily clean" (the file may have changed again within one tick
+ *  of the clock) and is always hashed again.
+ *
+ *  The file is MAGIC, VERSION and the entry count, then for each entry
+ *  in name order: the name, size, modification and status-change times
+ *  in nanoseconds, inode and the raw bytes of the blob id.
+ *  @author Yu Jia Xu
+ */
+class StatIndex {
+
+    /** Leading bytes of the index file. */
+    private static final int MAGIC = 0x47535441;
+    /** Format version. */
+    private static final int VERSION = 1;
+
+    /** Size, times and inode of a file. */
+    private static final class Stat {
+        /** Length in bytes. */
+        private final long size;
+        /** Modification time in nanoseconds since the epoch. */
+        private final long mtime;
+        /** Status-change time in nanoseconds, which unlike MTIME cannot be
+         *  set back by hand, or 0 where the platform has none. */
+        private final long ctime;
+        /** Inode number, or 0 where the platform has none. */
+        private final long inode;
+
+        /** A stat of SIZE bytes, modified at MTIME, changed at CTIME, with
+         *  inode INODE. */
+        Stat(long size, long mtime, long ctime, long inode) {
+            this.size = size;
+            this.mtime = mtime;
+            this.ctime = ctime;
+            this.inode = inode;
+        }
+
+        /** Return true iff THAT describes the same file unchanged. */
+        boolean matches(Stat that) {
+            return size == that.size && mtime == that.mtime
+                && ctime == that.ctime && inode == that.inode;
+        }
+    }
+
+    /** The file this index is kept in. */
+    private final File file;
+    /** The modification time of FILE when it was loaded, in nanoseconds;
+     *  entries modified or changed at or after it are racily clean. */
+    private final long written;
+    /** The stat of each recorded working file. */
+    private final TreeMap<String, Stat> stats = new TreeMap<>();
+    /** The blob id of each recorded working file. */
+    private final TreeMap<String, String> ids = new TreeMap<>();
+    /** True iff there are entries not yet saved to FILE. */
+    private boolean changed;
+
+    /** An index kept in FILE, read from it if it exists. */
+    StatIndex(File file) {
+        this.file = file;
+        if (!file.isFile()) {
+            written = Long.MIN_VALUE;
+            return;
+        }
+        try {
+            written = Files.getLastModifiedTime(file.toPath())
+                .to(TimeUnit.NANOSECONDS);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(Files.newInputStream(
+                     file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IllegalArgumentException("bad stat index");
+            }
+            byte[] raw = new byte[Utils.UID_BYTES];
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                String name = in.readUTF();
+                stats.put(name, new Stat(in.readLong(), in.readLong(),
+                                         in.readLong(), in.readLong()));
+                in.readFully(raw);
+                ids.put(name, Utils.bytesToHex(raw));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the blob id of working file SOURCE, named NAME, whose
+     *  contents are hashed after KEY.  The recorded id is returned when
+     *  the file's stat still matches; otherwise the file is hashed and
+     *  recorded.  Returns null if SOURCE does not exist. */
+    synchronized String id(String name, File source, String key) {
+        Stat now = stat(source);
+        if (now == null) {
+            forget(name);
+            return null;
+        }
+        Stat old = stats.get(name);
+        if (old != null && old.matches(now)
+            && Math.max(now.mtime, now.ctime) < written) {
+            return ids.get(name);
+        }
+        String id = Utils.sha1File(key, source);
+        stats.put(name, now);
+        ids.put(name, id);
+        changed = true;
+        return id;
+    }
+
+    /** Record that working file SOURCE, named NAME, was just written with
+     *  the contents of blob ID. */
+    synchronized void record(String name, File source, String id) {
+        Stat now = stat(source);
+        if (now == null) {
+            forget(name);
+            return;
+        }
+        stats.put(name, now);
+        ids.put(name, id);
+        changed = true;
+    }
+
+    /** Drop any entry for NAME. */
+    synchronized void forget(String name) {
+        if (stats.remove(name) != null) {
+            ids.remove(name);
+            changed = true;
+        }
+    }
+
+    /** Write this index back to its file if it changed, replacing the
+     *  file atomically. */
+    synchronized void save() {
+        if (!changed) {
+            return;
+        }
+        File temp = Utils.tempFile(file);
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(
+                     temp.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(stats.size());
+            for (Map.Entry<String, Stat> e : stats.entrySet()) {
+                Stat s = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(s.size);
+                out.writeLong(s.mtime);
+                out.writeLong(s.ctime);
+                out.writeLong(s.inode);
+                out.write(Utils.hexToBytes(ids.get(e.getKey())));
+            }
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        changed = false;
+    }
+
+    /** True while the platform reports inode numbers. */
+    private static boolean unix = true;
+
+    /** Return the stat of SOURCE, or null if it is not a plain file. */
+    private static Stat stat(File source) {
+        Path path = source.toPath();
+        try {
+            if (unix) {
+                try {
+                    Map<String, Object> a = Files.readAttributes(path,
+                        "unix:isRegularFile,size,lastModifiedTime,ctime,ino");
+                    if (!(Boolean) a.get("isRegularFile")) {
+                        return null;
+                    }
+                    return new Stat((Long) a.get("size"),
+                        nanos(a.get("lastModifiedTime")),
+                        nanos(a.get("ctime")), (Long) a.get("ino"));
+                } catch (UnsupportedOperationException excp) {
+                    unix = false;
+                }
+            }
+            BasicFileAttributes a =
+                Files.readAttributes(path, BasicFileAttributes.class);
+            if (!a.isRegularFile()) {
+                return null;
+            }
+            Object key = a.fileKey();
+            return new Stat(a.size(), nanos(a.lastModifiedTime()), 0,
+                            key == null ? 0 : key.hashCode());
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** Return the FileTime TIME in nanoseconds. */
+    private static long nanos(Object time) {
+        return ((FileTime) time).to(TimeUnit.NANOSECONDS);
+    }
+}
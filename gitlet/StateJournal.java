@@ -0,0 +1,272 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/** Where a repository's state is saved: a checkpoint, the file "state",
+ *  and a journal of the states saved since it was written.  Each save
+ *  appends one record to the journal and forces it to disk, or with a
+ *  larger SYNC_EVERY, forces every that many records; once the
+ *  journal holds CHECKPOINT records, the latest state is written to a
+ *  temporary file, forced and renamed over the checkpoint, and the
+ *  journal is deleted.  A record is the length and CRC-32 of a state as
+ *  CState encodes it, the state, the number of the record in the
+ *  journal and the length again, so a record torn by a crash is dropped
+ *  and the state read is always one saved whole.  States are saved
+ *  whole, so the last record alone is the state, and one left behind by
+ *  a crash during a checkpoint equals the new checkpoint.  Reading
+ *  starts from the trailing length and so costs one state; only a
+ *  journal whose last record was torn is scanned from its start.
+ *  Journals of version 1, whose records lack the trailer, are scanned
+ *  and then replaced by a checkpoint on the next save.
+ *  @author Yu Jia Xu
+ */
+class StateJournal {
+
+    /** Leading bytes of the journal, "GJNL". */
+    private static final int MAGIC = 0x474a4e4c;
+    /** Format version of the journal. */
+    private static final int VERSION = 2;
+    /** Format version of journals whose records have no trailer. */
+    private static final int UNTRAILED_VERSION = 1;
+    /** Length of the journal header, and of a record's header and of its
+     *  trailer. */
+    private static final int HEADER = 8;
+
+    /** Records the journal holds before it is checkpointed. */
+    static final int CHECKPOINT = 16;
+
+    /** Saves for each time the journal is forced to disk, as selected by
+     *  the gitlet.syncevery property or GITLET_SYNC_EVERY.  One, the
+     *  default, forces every save; scripted imports may share one force
+     *  among many commands, and so lose up to that many of the latest
+     *  states if the system crashes. */
+    static final int SYNC_EVERY = Math.max(1, Integer.parseInt(
+        System.getProperty("gitlet.syncevery", Objects.requireNonNullElse(
+            System.getenv("GITLET_SYNC_EVERY"), "1"))));
+
+    /** The checkpoint. */
+    private final File checkpoint;
+    /** The journal. */
+    private final File journal;
+    /** Saves between forces. */
+    private final int syncEvery;
+    /** Records in the journal when it was last read or appended to. */
+    private int records;
+    /** Length of the journal up to the end of its last whole record, then,
+     *  or 0 if it had none and no valid header. */
+    private long end;
+    /** True iff the journal, when last read, was of an older version, so
+     *  the next save must replace it. */
+    private boolean untrailed;
+    /** Times the journal or checkpoint was forced to disk. */
+    private long syncs;
+
+    /** The journal of the state kept in FOLDER, forcing it to disk once
+     *  every SYNCEVERY saves. */
+    StateJournal(File folder, int syncEvery) {
+        checkpoint = new File(folder, "state");
+        journal = new File(folder, "journal");
+        this.syncEvery = syncEvery;
+    }
+
+    /** Return the latest state saved, as CState encodes it.  Throws
+     *  IllegalArgumentException if none was. */
+    synchronized byte[] read() {
+        byte[] latest = null;
+        records = 0;
+        end = 0;
+        untrailed = false;
+        if (journal.isFile()) {
+            try (FileChannel ch = FileChannel.open(journal.toPath(),
+                                                   StandardOpenOption.READ)) {
+                ByteBuffer head = readAt(ch, 0, HEADER);
+                int version = head == null || head.getInt() != MAGIC ? -1
+                    : head.getInt();
+                if (version == VERSION) {
+                    ByteBuffer tail = readAt(ch, ch.size() - Integer.BYTES,
+                                             Integer.BYTES);
+                    if (tail != null) {
+                        int length = tail.getInt();
+                        latest = record(ch, ch.size() - length
+                                        - 2 * HEADER, length);
+                    }
+                    if (latest == null) {
+                        latest = scan(ch);
+                    }
+                } else if (version == UNTRAILED_VERSION) {
+                    untrailed = true;
+                    byte[] all = Utils.readContents(journal);
+                    latest = scanUntrailed(ByteBuffer.wrap(
+                        all, HEADER, all.length - HEADER));
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        if (latest == null) {
+            latest = Utils.readContents(checkpoint);
+        }
+        return latest;
+    }
+
+    /** Return the state of the last whole record of the journal open in
+     *  CH, scanning from its first, or null if it has none. */
+    private byte[] scan(FileChannel ch) throws IOException {
+        byte[] latest = null;
+        end = HEADER;
+        for (long at = HEADER;; at = end) {
+            ByteBuffer head = readAt(ch, at, Integer.BYTES);
+            byte[] state = head == null ? null
+                : record(ch, at, head.getInt());
+            if (state == null) {
+                return latest;
+            }
+            latest = state;
+        }
+    }
+
+    /** Return the state of the record of a state LENGTH bytes long at AT
+     *  in the journal open in CH, or null if there is no whole record
+     *  there.  If there is, it becomes the last one read. */
+    private byte[] record(FileChannel ch, long at, int length)
+        throws IOException {
+        if (length < 0 || at < HEADER) {
+            return null;
+        }
+        ByteBuffer buf = readAt(ch, at, length + 2 * HEADER);
+        if (buf == null || buf.getInt() != length) {
+            return null;
+        }
+        int sum = buf.getInt();
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), HEADER, length + Integer.BYTES);
+        if ((int) crc.getValue() != sum
+            || buf.getInt(HEADER + length + Integer.BYTES) != length) {
+            return null;
+        }
+        records = buf.getInt(HEADER + length);
+        end = at + buf.limit();
+        return Arrays.copyOfRange(buf.array(), HEADER, HEADER + length);
+    }
+
+    /** Return the LENGTH bytes at AT in CH, or null if there are not that
+     *  many. */
+    private static ByteBuffer readAt(FileChannel ch, long at, int length)
+        throws IOException {
+        if (at < 0 || length < 0 || at + length > ch.size()) {
+            return null;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, at + buf.position()) < 0) {
+                return null;
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+
+    /** Return the state of the last whole record of IN, a journal of
+     *  version 1 past its header, or null if it has none. */
+    private static byte[] scanUntrailed(ByteBuffer in) {
+        byte[] latest = null;
+        CRC32 crc = new CRC32();
+        while (in.remaining() >= HEADER) {
+            int length = in.getInt(), sum = in.getInt();
+            if (length < 0 || length > in.remaining()) {
+                break;
+            }
+            byte[] data = new byte[length];
+            in.get(data);
+            crc.reset();
+            crc.update(data);
+            if ((int) crc.getValue() != sum) {
+                break;
+            }
+            latest = data;
+        }
+        return latest;
+    }
+
+    /** Save STATE, as CState encodes it, as the latest state.  The
+     *  journal must have been read since it was last changed by anyone
+     *  else. */
+    synchronized void save(byte[] state) {
+        if (!checkpoint.isFile() || untrailed) {
+            writeCheckpoint(state);
+            return;
+        }
+        ByteBuffer ordinal = ByteBuffer.allocate(Integer.BYTES);
+        ordinal.putInt(records + 1);
+        CRC32 crc = new CRC32();
+        crc.update(state);
+        crc.update(ordinal.array());
+        ByteBuffer buf = ByteBuffer.allocate(3 * HEADER + state.length);
+        if (end == 0) {
+            buf.putInt(MAGIC).putInt(VERSION);
+        }
+        buf.putInt(state.length).putInt((int) crc.getValue()).put(state);
+        buf.putInt(records + 1).putInt(state.length);
+        buf.flip();
+        try (FileChannel ch = FileChannel.open(journal.toPath(),
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ch.truncate(end);
+            ch.position(end);
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            records += 1;
+            end = ch.position();
+            if (records % syncEvery == 0 || records >= CHECKPOINT) {
+                ch.force(false);
+                syncs += 1;
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (records >= CHECKPOINT) {
+            writeCheckpoint(state);
+        }
+    }
+
+    /** Return the number of times the journal or checkpoint was forced
+     *  to disk. */
+    synchronized long syncs() {
+        return syncs;
+    }
+
+    /** Atomically replace the checkpoint with STATE and delete the
+     *  journal, whose last record, if any, is STATE. */
+    private void writeCheckpoint(byte[] state) {
+        File temp = new File(checkpoint.getPath() + ".tmp");
+        try (FileChannel ch = FileChannel.open(temp.toPath(),
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.wrap(state);
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            ch.force(false);
+            syncs += 1;
+            Files.move(temp.toPath(), checkpoint.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        journal.delete();
+        records = 0;
+        end = 0;
+        untrailed = false;
+    }
+}
@@ -0,0 +1,294 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** One folder of the files a commit tracks.  A stored tree is MAGIC and
+ *  VERSION followed by a Binary table from the name of each file in the
+ *  folder to its blob, and from the name of each subfolder, with a '/'
+ *  after it, to its tree; its id is the SHA-1 of those bytes.  Equal
+ *  folders are therefore one tree, shared by every commit holding them,
+ *  and two trees with equal ids need not be looked into to compare.
+ *  Trees that have an id are never changed: a commit being built copies
+ *  the trees on the path to each file it changes, and reads folders it
+ *  does not change only when asked to.
+ *  @author Yu Jia Xu
+ */
+class Tree {
+
+    /** Leading bytes of a stored tree, "GTRE". */
+    private static final int MAGIC = 0x47545245;
+    /** Format version of stored trees. */
+    private static final int VERSION = 1;
+    /** Separator of the folders in a path. */
+    static final char SEP = '/';
+
+    /** Store that subfolders not read yet are read from, or null. */
+    private final ObjectStore store;
+    /** Blob of each file directly in this folder, by name: a FileMap
+     *  once hashed, or a TreeMap while it is being changed. */
+    private Map<String, String> files = FileMap.EMPTY;
+    /** Tree of each subfolder, by name, or null for one changed since it
+     *  was last hashed. */
+    private final TreeMap<String, String> folderids = new TreeMap<>();
+    /** Subfolders read or built so far, by name. */
+    private final HashMap<String, Tree> folders = new HashMap<>();
+    /** Id of this tree, or null while it is being changed. */
+    private String id;
+    /** True iff this tree is known to be in a store. */
+    private boolean stored;
+
+    /** An empty tree, to be filled in. */
+    Tree() {
+        this(null);
+    }
+
+    /** A tree whose subfolders are read from STORE. */
+    private Tree(ObjectStore store) {
+        this.store = store;
+    }
+
+    /** Return a new tree holding FILES, a map from paths to blobs. */
+    static Tree of(Map<String, String> files) {
+        Tree result = new Tree();
+        for (Map.Entry<String, String> e : files.entrySet()) {
+            result.put(e.getKey(), e.getValue());
+        }
+        return result;
+    }
+
+    /** Return the tree ID read from STORE. */
+    static Tree read(ObjectStore store, String id) {
+        Tree result = new Tree(store);
+        ByteBuffer in = ByteBuffer.wrap(store.read(id));
+        try {
+            if (in.getInt() != MAGIC || in.get() != VERSION) {
+                throw new IllegalArgumentException("bad tree");
+            }
+            TreeMap<String, String> table = new TreeMap<>();
+            Binary.readTable(in, table);
+            TreeMap<String, String> files = new TreeMap<>();
+            for (Map.Entry<String, String> e : table.entrySet()) {
+                String name = e.getKey();
+                if (name.endsWith("/")) {
+                    result.folderids.put(name.substring(0, name.length() - 1),
+                                         e.getValue());
+                } else {
+                    files.put(name, e.getValue());
+                }
+            }
+            result.files = FileMap.of(files);
+        } catch (IOException | BufferUnderflowException excp) {
+            throw new IllegalArgumentException("bad tree: " + excp);
+        }
+        result.id = id;
+        result.stored = true;
+        return result;
+    }
+
+    /** Return a changeable copy of this tree, which shares its
+     *  subfolders until they are changed. */
+    Tree copy() {
+        id();
+        Tree result = new Tree(store);
+        synchronized (this) {
+            result.files = files;
+            result.folderids.putAll(folderids);
+            result.folders.putAll(folders);
+        }
+        return result;
+    }
+
+    /** Return the blob of the file at PATH, or null if there is none. */
+    String get(String path) {
+        Tree folder = this;
+        int start = 0;
+        for (int sep = path.indexOf(SEP); sep >= 0;
+             sep = path.indexOf(SEP, start)) {
+            folder = folder.folder(path.substring(start, sep));
+            if (folder == null) {
+                return null;
+            }
+            start = sep + 1;
+        }
+        return folder.files.get(path.substring(start));
+    }
+
+    /** Make BLOB the file at PATH, adding the folders on its way. */
+    void put(String path, String blob) {
+        Tree folder = this;
+        int start = 0;
+        id = null;
+        stored = false;
+        for (int sep = path.indexOf(SEP); sep >= 0;
+             sep = path.indexOf(SEP, start)) {
+            folder = folder.changed(path.substring(start, sep));
+            start = sep + 1;
+        }
+        folder.edit().put(path.substring(start), blob);
+    }
+
+    /** Remove the file at PATH, and the folders that leaves empty. */
+    void remove(String path) {
+        if (get(path) == null) {
+            return;
+        }
+        id = null;
+        stored = false;
+        int sep = path.indexOf(SEP);
+        if (sep < 0) {
+            edit().remove(path);
+            return;
+        }
+        String name = path.substring(0, sep);
+        Tree folder = changed(name);
+        folder.remove(path.substring(sep + 1));
+        if (folder.files.isEmpty() && folder.folderids.isEmpty()) {
+            folders.remove(name);
+            folderids.remove(name);
+        }
+    }
+
+    /** Return the id of this tree, hashing the folders changed since it
+     *  was last hashed. */
+    String id() {
+        if (id == null) {
+            for (Map.Entry<String, String> e : folderids.entrySet()) {
+                if (e.getValue() == null) {
+                    e.setValue(folders.get(e.getKey()).id());
+                }
+            }
+            files = FileMap.of(files);
+            id = Utils.sha1(encode());
+        }
+        return id;
+    }
+
+    /** Write this tree and every tree under it that is not yet stored
+     *  to STORE. */
+    void save(ObjectStore trees) {
+        if (stored) {
+            return;
+        }
+        id();
+        for (Tree folder : folders.values()) {
+            folder.save(trees);
+        }
+        trees.write(id, encode());
+        stored = true;
+    }
+
+    /** Add each path under this tree to FILES, mapped to its blob, with
+     *  PREFIX before it. */
+    void flatten(String prefix, Map<String, String> files) {
+        for (Map.Entry<String, String> e : this.files.entrySet()) {
+            files.put(prefix + e.getKey(), e.getValue());
+        }
+        for (String name : folderids.keySet()) {
+            folder(name).flatten(prefix + name + SEP, files);
+        }
+    }
+
+    /** Add the ids of this tree and every tree under it to IDS, skipping
+     *  trees already there. */
+    void ids(Set<String> ids) {
+        if (ids.add(id())) {
+            for (String name : folderids.keySet()) {
+                folder(name).ids(ids);
+            }
+        }
+    }
+
+    /** Add to CHANGES each path, with PREFIX before it, whose blob in
+     *  BEFORE differs from the one in AFTER, mapped to the pair of them.
+     *  Either tree may be null for a missing folder, and a file missing
+     *  from one has a null blob there.  Folders whose trees have equal
+     *  ids are skipped without being read. */
+    static void diff(Tree before, Tree after, String prefix,
+                     Map<String, String[]> changes) {
+        if (before != null && after != null
+            && before.id().equals(after.id())) {
+            return;
+        }
+        TreeSet<String> subfolders = new TreeSet<>();
+        for (Tree tree : new Tree[] {before, after}) {
+            if (tree != null) {
+                subfolders.addAll(tree.folderids.keySet());
+            }
+        }
+        FileMap.diff(before == null ? FileMap.EMPTY : before.hashedfiles(),
+                     after == null ? FileMap.EMPTY : after.hashedfiles(),
+                     prefix, changes);
+        for (String name : subfolders) {
+            diff(before == null ? null : before.folder(name),
+                 after == null ? null : after.folder(name),
+                 prefix + name + SEP, changes);
+        }
+    }
+
+    /** Return the files directly in this tree, hashing it if need be. */
+    private FileMap hashedfiles() {
+        id();
+        return (FileMap) files;
+    }
+
+    /** Return the files directly in this tree, to be changed. */
+    private TreeMap<String, String> edit() {
+        if (!(files instanceof TreeMap)) {
+            files = new TreeMap<>(files);
+        }
+        return (TreeMap<String, String>) files;
+    }
+
+    /** Return the subfolder NAME, reading it if need be, or null if there
+     *  is none. */
+    private synchronized Tree folder(String name) {
+        Tree result = folders.get(name);
+        if (result == null && folderids.get(name) != null) {
+            result = read(store, folderids.get(name));
+            folders.put(name, result);
+        }
+        return result;
+    }
+
+    /** Return the subfolder NAME, added if there is none and copied if it
+     *  may be shared, for this tree to change. */
+    private Tree changed(String name) {
+        Tree result = folder(name);
+        if (result == null) {
+            result = new Tree();
+        } else if (result.id != null) {
+            result = result.copy();
+        }
+        result.id = null;
+        result.stored = false;
+        folders.put(name, result);
+        folderids.put(name, null);
+        return result;
+    }
+
+    /** Return this tree in the stored format. */
+    private byte[] encode() {
+        TreeMap<String, String> table = new TreeMap<>(files);
+        for (Map.Entry<String, String> e : folderids.entrySet()) {
+            table.put(e.getKey() + SEP, e.getValue());
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            Binary.writeTable(out, table);
+        } catch (IOException excp) {
+            throw Utils.error("Internal error serializing tree.");
+        }
+        return bytes.toByteArray();
+    }
+}
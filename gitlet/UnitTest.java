@@ -4,6 +4,31 @@ import ucb.junit.textui;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
 /** The suite of all JUnit tests for the gitlet package.
  *  @author
  */
@@ -20,6 +45,1115 @@ public class UnitTest {
     public void placeholderTest() {
     }
 
-}
+    /** Return a parent lookup over the in-memory history GRAPH. */
+    private static Utils.Function<String, String[]>
+        lookup(final HashMap<String, String[]> graph) {
+        return new Utils.Function<String, String[]>() {
+            @Override
+            String[] apply(String id) {
+                return graph.get(id);
+            }
+        };
+    }
+
+    /** Return a generation lookup over the in-memory history GRAPH. */
+    private static Utils.Function<String, Integer>
+        generations(final HashMap<String, String[]> graph) {
+        final HashMap<String, Integer> result = new HashMap<>();
+        ArrayDeque<String> work = new ArrayDeque<>();
+        for (String id : graph.keySet()) {
+            work.push(id);
+            while (!work.isEmpty()) {
+                String x = work.peek();
+                int g = 1;
+                boolean ready = true;
+                for (String p : graph.get(x)) {
+                    if (!result.containsKey(p)) {
+                        ready = false;
+                        work.push(p);
+                    } else {
+                        g = Math.max(g, result.get(p) + 1);
+                    }
+                }
+                if (ready) {
+                    result.put(work.pop(), g);
+                }
+            }
+        }
+        return new Utils.Function<String, Integer>() {
+            @Override
+            Integer apply(String id) {
+                return result.get(id);
+            }
+        };
+    }
+
+    /** Return the breadth-first distances from ID in GRAPH. */
+    private static HashMap<String, Integer> distances(
+        HashMap<String, String[]> graph, String id) {
+        HashMap<String, Integer> result = new HashMap<>();
+        ArrayDeque<String> work = new ArrayDeque<>();
+        result.put(id, 0);
+        work.add(id);
+        while (!work.isEmpty()) {
+            String x = work.remove();
+            for (String p : graph.get(x)) {
+                if (!result.containsKey(p)) {
+                    result.put(p, result.get(x) + 1);
+                    work.add(p);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Check that BASE is a closest common ancestor of HEAD and OTHER. */
+    private static void checkBase(HashMap<String, String[]> graph,
+                                  String head, String other, String base) {
+        HashMap<String, Integer> fromHead = distances(graph, head);
+        HashSet<String> common =
+            new HashSet<>(distances(graph, other).keySet());
+        common.retainAll(fromHead.keySet());
+        int best = Integer.MAX_VALUE;
+        for (String c : common) {
+            best = Math.min(best, fromHead.get(c));
+        }
+        assertTrue(common.contains(base));
+        assertEquals((long) best, (long) fromHead.get(base));
+    }
+
+    /** Two branches of 10000 commits each off a long trunk. */
+    @Test
+    public void mergeBaseDeepHistory() {
+        HashMap<String, String[]> graph = new HashMap<>();
+        graph.put("t0", new String[0]);
+        for (int i = 1; i < 10000; i += 1) {
+            graph.put("t" + i, new String[] {"t" + (i - 1)});
+        }
+        String a = "t9999", b = "t9999";
+        for (int i = 0; i < 10000; i += 1) {
+            graph.put("a" + i, new String[] {a});
+            graph.put("b" + i, new String[] {b});
+            a = "a" + i;
+            b = "b" + i;
+        }
+        MergeBase engine = new MergeBase(lookup(graph));
+        assertEquals("t9999", engine.find(a, b));
+        assertEquals("t5000", engine.find("t5000", a));
+        assertEquals("a10", engine.find(a, "a10"));
+        final int[] loads = new int[1];
+        final Utils.Function<String, String[]> parents = lookup(graph);
+        engine = new MergeBase(new Utils.Function<String, String[]>() {
+            @Override
+            String[] apply(String id) {
+                loads[0] += 1;
+                return parents.apply(id);
+            }
+        }, generations(graph));
+        assertEquals("t9999", engine.find(a, b));
+        assertEquals(20000, loads[0]);
+        assertEquals("a10", engine.find(a, "a10"));
+        assertEquals("t5000", engine.find("t5000", a));
+    }
+
+    /** Two branches that merge each other after every commit. */
+    @Test
+    public void mergeBaseDenseMerges() {
+        HashMap<String, String[]> graph = new HashMap<>();
+        graph.put("root", new String[0]);
+        String a = "root", b = "root";
+        for (int i = 0; i < 6000; i += 1) {
+            String na = "a" + i, nb = "b" + i;
+            graph.put(na, i % 2 == 0 ? new String[] {a, b}
+                                     : new String[] {a});
+            graph.put(nb, new String[] {b, a});
+            a = na;
+            b = nb;
+        }
+        MergeBase engine = new MergeBase(lookup(graph));
+        String base = engine.find(a, b);
+        checkBase(graph, a, b, base);
+        checkBase(graph, "a3001", "b2000", engine.find("a3001", "b2000"));
+        engine = new MergeBase(lookup(graph), generations(graph));
+        checkBase(graph, a, b, engine.find(a, b));
+        checkBase(graph, "a3001", "b2000", engine.find("a3001", "b2000"));
+    }
 
+    /** Random DAGs checked against a brute-force reference. */
+    @Test
+    public void mergeBaseRandomHistories() {
+        Random random = new Random(61);
+        for (int trial = 0; trial < 50; trial += 1) {
+            HashMap<String, String[]> graph = new HashMap<>();
+            graph.put("c0", new String[0]);
+            int n = 2 + random.nextInt(300);
+            for (int i = 1; i < n; i += 1) {
+                String p = "c" + random.nextInt(i);
+                if (random.nextInt(3) == 0) {
+                    String q = "c" + random.nextInt(i);
+                    graph.put("c" + i, new String[] {p, q});
+                } else {
+                    graph.put("c" + i, new String[] {p});
+                }
+            }
+            MergeBase engine = new MergeBase(lookup(graph));
+            MergeBase ranked =
+                new MergeBase(lookup(graph), generations(graph));
+            for (int k = 0; k < 10; k += 1) {
+                String x = "c" + random.nextInt(n);
+                String y = "c" + random.nextInt(n);
+                checkBase(graph, x, y, engine.find(x, y));
+                checkBase(graph, x, y, ranked.find(x, y));
+            }
+        }
+    }
+
+    /** Several heads, and heads with no shared history. */
+    @Test
+    public void mergeBaseManyHeads() {
+        HashMap<String, String[]> graph = new HashMap<>();
+        graph.put("r", new String[0]);
+        graph.put("s", new String[] {"r"});
+        graph.put("x", new String[] {"s"});
+        graph.put("y", new String[] {"s"});
+        graph.put("z", new String[] {"r"});
+        graph.put("m", new String[] {"x", "y"});
+        graph.put("lone", new String[0]);
+        MergeBase engine = new MergeBase(lookup(graph), generations(graph));
+        assertEquals("s", engine.find(Arrays.asList("x", "y", "m")));
+        assertEquals("r", engine.find(Arrays.asList("x", "y", "z")));
+        assertEquals("x", engine.find(Arrays.asList("m", "x")));
+        assertNull(engine.find("m", "lone"));
+    }
 
+    /** Return a fresh empty temporary directory. */
+    private static File tempDir() {
+        try {
+            File dir = Files.createTempDirectory("gitlet").toFile();
+            dir.deleteOnExit();
+            return dir;
+        } catch (IOException excp) {
+            throw new AssertionError(excp);
+        }
+    }
+
+    /** The commit graph keeps ids sorted and generations consistent as
+     *  commits are added out of id order, through its layer and as the
+     *  layer is merged, and ignores a torn layer record. */
+    @Test
+    public void commitGraphIncremental() {
+        File dir = tempDir();
+        File file = new File(dir, "commit_graph");
+        ObjectStore store = new ObjectStore(dir, new File(dir, "pack"));
+        CommitGraph graph = CommitGraph.load(file);
+        String root = Utils.sha1("root");
+        graph = graph.add(file, store, root, new String[0], 0L);
+        String prev = root;
+        String[] chain = new String[100];
+        for (int i = 0; i < chain.length; i += 1) {
+            chain[i] = Utils.sha1("c" + i);
+            graph = graph.add(file, store, chain[i], new String[] {prev}, i);
+            prev = chain[i];
+        }
+        String side = Utils.sha1("side");
+        graph = graph.add(file, store, side, new String[] {chain[10]}, 7L);
+        String merge = Utils.sha1("merge");
+        graph = graph.add(file, store, merge,
+                          new String[] {chain[99], side}, 8L);
+        File layer = new File(dir, "commit_graph-layer");
+        assertTrue(layer.isFile());
+        byte[] torn = Utils.readContents(layer);
+        Utils.writeContents(layer, torn, Arrays.copyOf(torn, 30));
+        graph = CommitGraph.load(file);
+        assertEquals(103, graph.size());
+        for (int i = 1; i < graph.size(); i += 1) {
+            assertTrue(graph.id(i - 1).compareTo(graph.id(i)) < 0);
+        }
+        int m = graph.find(merge);
+        assertEquals(102, graph.generation(m));
+        assertEquals(chain[99], graph.id(graph.parent(m)));
+        assertEquals(side, graph.id(graph.subparent(m)));
+        assertEquals(13, graph.generation(graph.find(side)));
+        assertEquals(7L, graph.date(graph.find(side)));
+        assertTrue(graph.isAncestor(root, merge));
+        assertTrue(graph.isAncestor(side, merge));
+        assertFalse(graph.isAncestor(chain[50], side));
+        assertFalse(graph.contains(Utils.sha1("absent")));
+        assertEquals(chain[10], new MergeBase(graph.parentLookup(store),
+                                              graph.generationLookup())
+                     .find(side, chain[99]));
+    }
+
+    /** Packed objects read back exactly, and repacking appends. */
+    @Test
+    public void objectStoreRepack() {
+        File dir = tempDir();
+        ObjectStore store = new ObjectStore(dir, new File(dir, "p/objs"));
+        String[] ids = new String[300];
+        for (int i = 0; i < ids.length; i += 1) {
+            ids[i] = Utils.sha1("obj" + i);
+            store.write(ids[i], "content " + i);
+            if (i == 150) {
+                assertEquals(151, store.repack());
+            }
+        }
+        assertEquals(149, store.repack());
+        assertEquals(0, store.repack());
+        assertTrue(Utils.plainFilenamesIn(dir).isEmpty());
+        for (int i = 0; i < ids.length; i += 1) {
+            assertTrue(store.contains(ids[i]));
+            assertEquals("content " + i, new String(store.read(ids[i])));
+        }
+        assertFalse(store.contains(Utils.sha1("missing")));
+        assertEquals(ids.length, store.list().size());
+    }
+
+    /** Retaining a subset drops the rest from both the pack and the loose
+     *  objects, and equal contents written under no prefix share an id. */
+    @Test
+    public void objectStoreRetain() {
+        File dir = tempDir();
+        ObjectStore store = new ObjectStore(dir, new File(dir, "p/objs"));
+        Set<String> keep = new HashSet<>();
+        String[] ids = new String[40];
+        for (int i = 0; i < ids.length; i += 1) {
+            ids[i] = store.write("", new ByteArrayInputStream(
+                ("content " + i).getBytes(StandardCharsets.UTF_8)));
+            if (i % 3 == 0) {
+                keep.add(ids[i]);
+            }
+            if (i == 20) {
+                store.repack();
+            }
+        }
+        assertEquals(ids[7], store.write("", new ByteArrayInputStream(
+            "content 7".getBytes(StandardCharsets.UTF_8))));
+        assertEquals(Utils.sha1("content 7"), ids[7]);
+        store.retain(keep);
+        assertEquals(new ArrayList<>(new TreeSet<>(keep)), store.list());
+        for (int i = 0; i < ids.length; i += 3) {
+            assertEquals("content " + i, new String(store.read(ids[i])));
+        }
+    }
+
+    /** Deltas rebuild their targets exactly. */
+    @Test
+    public void deltaRoundTrip() {
+        Random random = new Random(4);
+        for (int trial = 0; trial < 200; trial += 1) {
+            byte[] base = new byte[random.nextInt(5000)];
+            random.nextBytes(base);
+            byte[] target = base.clone();
+            if (target.length > 0) {
+                for (int k = random.nextInt(10); k > 0; k -= 1) {
+                    target[random.nextInt(target.length)] ^= 1;
+                }
+            }
+            if (random.nextBoolean()) {
+                byte[] extra = new byte[random.nextInt(100)];
+                random.nextBytes(extra);
+                target = (new String(target, StandardCharsets.ISO_8859_1)
+                          + new String(extra, StandardCharsets.ISO_8859_1))
+                    .getBytes(StandardCharsets.ISO_8859_1);
+            }
+            byte[] delta = Delta.encode(base, target);
+            assertArrayEquals(target, Delta.apply(base, delta));
+            if (base.length > 1000 && base.length == target.length) {
+                assertTrue(delta.length < target.length / 2);
+            }
+        }
+    }
+
+    /** Delta chains are bounded and read back through a fresh store. */
+    @Test
+    public void blobStoreDeltaChains() {
+        File dir = tempDir();
+        BlobStore store = new BlobStore(dir, new File(dir, "pack"));
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i += 1) {
+            text.append("line ").append(i).append('\n');
+        }
+        String prev = null;
+        String[] ids = new String[40];
+        String[] contents = new String[ids.length];
+        for (int r = 0; r < ids.length; r += 1) {
+            text.append("edit ").append(r).append('\n');
+            contents[r] = text.toString();
+            ids[r] = Utils.sha1("f", contents[r]);
+            store.write(ids[r], contents[r].getBytes(StandardCharsets.UTF_8),
+                        prev);
+            prev = ids[r];
+            assertTrue(store.depth(ids[r]) <= BlobStore.MAX_DEPTH);
+        }
+        assertEquals(1, store.depth(ids[1]));
+        assertEquals(0, store.depth(ids[BlobStore.MAX_DEPTH + 1]));
+        byte[] lookalike = ("\0gitdlt\1\1" + ids[0] + "\0\0")
+            .getBytes(StandardCharsets.ISO_8859_1);
+        String odd = Utils.sha1("f", lookalike);
+        store.write(odd, lookalike, null);
+        assertEquals(0, store.depth(odd));
+        store.repack();
+        BlobStore fresh = new BlobStore(dir, new File(dir, "pack"));
+        for (int r = ids.length - 1; r >= 0; r -= 1) {
+            assertEquals(contents[r], new String(fresh.read(ids[r]),
+                                                 StandardCharsets.UTF_8));
+        }
+        assertArrayEquals(lookalike, fresh.read(odd));
+    }
+
+    /** Objects are written into shards, objects kept flat before shards
+     *  stay readable, and shard moves them in and marks the store. */
+    @Test
+    public void objectStoreShards() {
+        File dir = tempDir();
+        ObjectStore store = new ObjectStore(dir, new File(dir, "pack"));
+        String flat = Utils.sha1("flat"), fresh = Utils.sha1("fresh");
+        Utils.writeContents(new File(dir, flat), "old");
+        store.write(fresh, "new");
+        assertTrue(new File(dir, fresh.substring(0, 2) + File.separator
+                            + fresh.substring(2)).isFile());
+        assertEquals(new ArrayList<>(new TreeSet<>(Arrays.asList(flat,
+                                                                 fresh))),
+                     store.list());
+        assertEquals(1, store.shard());
+        assertFalse(new File(dir, flat).exists());
+        ObjectStore reopened = new ObjectStore(dir, new File(dir, "pack"));
+        for (ObjectStore s : new ObjectStore[] {store, reopened}) {
+            assertTrue(s.contains(flat));
+            assertEquals("old", new String(s.read(flat),
+                                           StandardCharsets.UTF_8));
+        }
+        assertEquals(0, reopened.shard());
+        assertEquals(2, reopened.repack());
+        assertEquals(2, reopened.list().size());
+        assertEquals("new", new String(reopened.read(fresh),
+                                       StandardCharsets.UTF_8));
+    }
+
+    /** Objects round-trip through every codec and objects written before
+     *  codecs existed still read back unchanged. */
+    @Test
+    public void objectStoreCodecs() throws IOException {
+        File dir = tempDir();
+        ObjectStore store = new ObjectStore(dir, new File(dir, "pack"));
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 20000; i += 1) {
+            big.append("repetitive line ").append(i % 10).append('\n');
+        }
+        String legacy = Utils.sha1("legacy");
+        Utils.writeContents(new File(dir, legacy), "\0gitob raw bytes");
+        String none = Utils.sha1("none"), deflated = Utils.sha1("deflate");
+        store.setCodec(Codec.NONE);
+        store.write(none, big.toString());
+        store.setCodec(Codec.DEFLATE);
+        store.write(deflated, big.toString());
+        assertTrue(store.looseFile(deflated).length() * 10
+                   < store.looseFile(none).length());
+        for (int round = 0; round < 2; round += 1) {
+            assertEquals("\0gitob raw bytes",
+                         new String(store.read(legacy),
+                                    StandardCharsets.UTF_8));
+            for (String id : new String[] {none, deflated}) {
+                try (InputStream in = store.open(id)) {
+                    assertEquals(big.toString(),
+                                 new String(in.readAllBytes(),
+                                            StandardCharsets.UTF_8));
+                }
+            }
+            store.repack();
+        }
+        File out = new File(dir, "out");
+        store.copyTo(deflated, out);
+        assertEquals(big.toString(), Utils.readContentsAsString(out));
+    }
+
+    /** Files are hashed and stored as streams, byte for byte, and come
+     *  back intact through every copy path. */
+    @Test
+    public void streamingBinaryBlobs() {
+        File dir = tempDir();
+        byte[] data = new byte[3 * Codec.BUFFER + 17];
+        new Random(6).nextBytes(data);
+        data[0] = (byte) 0xff;
+        File source = new File(dir, "source.bin");
+        Utils.writeContents(source, data);
+        assertEquals(Utils.sha1("name", data),
+                     Utils.sha1File("name", source));
+        for (Codec codec : new Codec[] {Codec.NONE, Codec.DEFLATE}) {
+            File objs = new File(dir, codec.toString());
+            objs.mkdir();
+            BlobStore store = new BlobStore(objs, new File(objs, "pack"));
+            store.setCodec(codec);
+            String id = store.writeFile("name", source, null);
+            assertEquals(Utils.sha1("name", data), id);
+            for (int round = 0; round < 2; round += 1) {
+                File out = new File(objs, "out" + round);
+                Utils.writeContents(out, "longer stale contents to truncate");
+                store.copyTo(id, out);
+                assertArrayEquals(data, Utils.readContents(out));
+                store.repack();
+            }
+        }
+    }
+
+    /** The commit cache counts hits and misses and evicts the least
+     *  recently used commits by weight. */
+    @Test
+    public void commitCacheEvicts() {
+        CommitCache cache = new CommitCache(10);
+        File dir = tempDir();
+        ObjectStore store = new ObjectStore(dir, new File(dir, "pack"));
+        ObjectStore other = new ObjectStore(dir, new File(dir, "pack"));
+        Commit[] commits = new Commit[4];
+        for (int i = 0; i < commits.length; i += 1) {
+            commits[i] = new Commit(new Date(i), "c" + i, null);
+            commits[i].addfiles("f", Utils.sha1("id" + i));
+            commits[i].addfiles("g", Utils.sha1("id" + i));
+            cache.put(store, "c" + i, commits[i]);
+        }
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.evictions());
+        assertNull(cache.get(store, "c0"));
+        assertSame(commits[1], cache.get(store, "c1"));
+        cache.put(store, "c4", commits[0]);
+        assertNull(cache.get(store, "c2"));
+        assertSame(commits[1], cache.get(store, "c1"));
+        assertNull(cache.get(other, "c1"));
+        assertEquals(2, cache.hits());
+        assertEquals(3, cache.misses());
+    }
+
+    /** The journal gives back the last state saved whole, drops a torn
+     *  record, forces itself only as often as asked, checkpoints, and
+     *  still reads journals of version 1. */
+    @Test
+    public void stateJournalRecovers() throws IOException {
+        File dir = tempDir();
+        StateJournal journal = new StateJournal(dir, 4);
+        journal.save("s0".getBytes(StandardCharsets.UTF_8));
+        assertEquals(1, journal.syncs());
+        for (int i = 1; i <= 8; i += 1) {
+            journal.read();
+            journal.save(("s" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(3, journal.syncs());
+        assertEquals("s8", new String(journal.read(), StandardCharsets.UTF_8));
+        File log = new File(dir, "journal");
+        byte[] whole = Utils.readContents(log);
+        Files.write(log.toPath(), Arrays.copyOf(whole, whole.length + 5));
+        assertEquals("s8", new String(journal.read(), StandardCharsets.UTF_8));
+        journal.save("s9".getBytes(StandardCharsets.UTF_8));
+        assertEquals("s9", new String(new StateJournal(dir, 1).read(),
+                                      StandardCharsets.UTF_8));
+        Files.write(log.toPath(), Arrays.copyOf(whole, whole.length - 1));
+        assertEquals("s7", new String(journal.read(), StandardCharsets.UTF_8));
+        for (int i = 0; i < StateJournal.CHECKPOINT; i += 1) {
+            journal.read();
+            journal.save(("t" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals("t" + (StateJournal.CHECKPOINT - 1),
+                     new String(journal.read(), StandardCharsets.UTF_8));
+        assertTrue(Utils.readContentsAsString(new File(dir, "state"))
+                   .startsWith("t"));
+        assertTrue(log.length() < 200);
+        byte[] old = "u1".getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(old);
+        ByteBuffer untrailed = ByteBuffer.allocate(16 + old.length);
+        untrailed.putInt(0x474a4e4c).putInt(1).putInt(old.length)
+            .putInt((int) crc.getValue()).put(old);
+        Files.write(log.toPath(), untrailed.array());
+        assertEquals("u1", new String(journal.read(), StandardCharsets.UTF_8));
+        journal.save("u2".getBytes(StandardCharsets.UTF_8));
+        assertFalse(log.isFile());
+        assertEquals("u2", new String(journal.read(), StandardCharsets.UTF_8));
+    }
+
+    /** File maps hold their entries in path order however they were
+     *  built, refuse ids that are not SHA-1s, and diff finds what was
+     *  added, removed and modified. */
+    @Test
+    public void fileMapDiffs() {
+        HashMap<String, String> before = new HashMap<>();
+        for (int i = 0; i < 100; i += 1) {
+            before.put("f" + i, Utils.sha1("v" + i));
+        }
+        before.put("odd", Utils.sha1("odd"));
+        HashMap<String, String> after = new HashMap<>(before);
+        after.remove("f3");
+        after.put("f7", Utils.sha1("new"));
+        after.put("g", Utils.sha1("g"));
+        after.put("odd", Utils.sha1("other"));
+        FileMap a = FileMap.of(before);
+        assertEquals(before, a);
+        assertEquals(a, FileMap.of(new TreeMap<>(before)));
+        assertEquals(new ArrayList<>(new TreeSet<>(before.keySet())),
+                     new ArrayList<>(a.keySet()));
+        assertEquals(Utils.sha1("v5"), a.get("f5"));
+        assertNull(a.get("f"));
+        assertSame(a.path(0), FileMap.of(after).path(0));
+        Map<String, String[]> d = FileMap.diff(a, FileMap.of(after));
+        assertEquals(Arrays.asList("f3", "f7", "g", "odd"),
+                     new ArrayList<>(d.keySet()));
+        assertNull(d.get("f3")[1]);
+        assertNull(d.get("g")[0]);
+        assertEquals(Utils.sha1("v7"), d.get("f7")[0]);
+        assertEquals(Utils.sha1("other"), d.get("odd")[1]);
+        assertTrue(FileMap.diff(a, FileMap.of(before)).isEmpty());
+        for (String bad : new String[] {"not an id",
+                                        Utils.sha1("x").toUpperCase()}) {
+            before.put("odd", bad);
+            try {
+                FileMap.of(before);
+                fail("accepted " + bad);
+            } catch (IllegalArgumentException excp) {
+                assertTrue(excp.getMessage().startsWith("bad blob id"));
+            }
+        }
+    }
+
+    /** Commits and states survive the binary format, and ones Java
+     *  serialized before it still read back the same. */
+    @Test
+    public void binaryRecordsRoundTrip() {
+        Commit c = new Commit(new Date(-12345), "caf\u00e9 \ud83d\ude00",
+                              null);
+        c.setP(Utils.sha1("parent"));
+        c.setSubparent("null");
+        for (int i = 0; i < 12; i += 1) {
+            c.addfiles("dir/file" + i + ".txt", Utils.sha1("blob" + i));
+        }
+        c.addfiles("\ud83d\ude00", Utils.sha1("emoji"));
+        File dir = tempDir();
+        ObjectStore store = new ObjectStore(dir, new File(dir, "pack"));
+        ObjectStore trees = new ObjectStore(new File(dir, "trees"),
+                                            new File(dir, "tpack"));
+        trees.shard();
+        c.saveCommit(store, trees);
+        String id = c.sha1();
+        for (Commit d : new Commit[] {Commit.fromFile(store, trees, id),
+                                      Commit.decode(Utils.serialize(c))}) {
+            assertEquals(c.getDate(), d.getDate());
+            assertEquals(c.getMessage(), d.getMessage());
+            assertEquals(c.getP(), d.getP());
+            assertEquals(c.getSubparent(), d.getSubparent());
+            assertEquals(c.getFiles(), d.getFiles());
+        }
+        assertTrue(c.encode().length * 2 < Utils.serialize(c).length);
+        assertEquals(id, Commit.fromFile(store, trees, id).sha1());
+        long weight = Commit.CACHE.weight();
+        assertEquals(13, Commit.fromFile(store, trees, id).getFiles().size());
+        assertEquals(weight, Commit.CACHE.weight());
+        Commit shared = Commit.fromFile(store, trees, id);
+        assertNotSame(shared, Commit.fromFile(store, trees, id));
+        shared.removefile("\ud83d\ude00");
+        assertEquals(c.getFiles(),
+                     Commit.fromFile(store, trees, id).getFiles());
+
+        CState s = new CState();
+        s.setCommitsha1(c.sha1());
+        s.setCurrentbranch("master");
+        s.putbranch("master");
+        s.putbranch("other", Utils.sha1("other"));
+        s.savermfiles("gone.txt", Utils.sha1("gone"));
+        for (byte[] data : new byte[][] {s.encode(), Utils.serialize(s)}) {
+            CState t = CState.decode(data);
+            assertEquals(s.getCommitsha1(), t.getCommitsha1());
+            assertEquals(s.getCurrentbranch(), t.getCurrentbranch());
+            assertEquals(s.getbranches(), t.getbranches());
+            assertEquals(s.getRmfiles(), t.getRmfiles());
+        }
+    }
+
+    /** The message index answers exact and word searches, both from its
+     *  tables and from commits logged since they were built, and drops a
+     *  record torn while it was appended. */
+    @Test
+    public void messageIndexFinds() {
+        File dir = tempDir();
+        File log = new File(dir, "messages"), idx = new File(dir, "idx");
+        MessageIndex.create(log);
+        String[] ids = new String[300];
+        for (int i = 0; i < ids.length; i += 1) {
+            ids[i] = Utils.sha1("commit" + i);
+            MessageIndex.append(log, idx, ids[i],
+                                i % 3 == 0 ? "Fix bug " + i : "Add feature");
+        }
+        assertTrue(idx.isFile());
+        MessageIndex index = MessageIndex.open(log, idx, null);
+        assertEquals(Arrays.asList(ids[3]), index.find("Fix bug 3"));
+        assertEquals(200, index.find("Add feature").size());
+        assertTrue(index.find("Add").isEmpty());
+        assertEquals(Arrays.asList(ids[141]), index.grep("BUG 141"));
+        assertEquals(5, index.grep("bug 27").size());
+        assertEquals(100, index.grep("fix, bug!").size());
+        assertEquals(200, index.grep("eatur").size());
+        assertEquals(100, index.grep("ug").size());
+        assertTrue(index.grep("fix feature").isEmpty());
+        String late = Utils.sha1("late");
+        MessageIndex.append(log, idx, late, "late fix");
+        index = MessageIndex.open(log, idx, null);
+        assertEquals(Arrays.asList(late), index.find("late fix"));
+        assertEquals(101, index.grep("fix").size());
+        long whole = log.length();
+        assertTrue(MessageIndex.current(log, idx));
+        tear(log);
+        assertFalse(MessageIndex.current(log, idx));
+        index = MessageIndex.open(log, idx, null);
+        assertEquals(whole, log.length());
+        assertTrue(MessageIndex.current(log, idx));
+        assertEquals(101, index.grep("fix").size());
+        tear(log);
+        MessageIndex.append(log, idx, ids[0], "after torn fix");
+        index = MessageIndex.open(log, idx, null);
+        assertEquals(Arrays.asList(ids[0]), index.find("after torn fix"));
+    }
+
+    /** Append part of a record to the message log LOG, as a crash while
+     *  appending might leave it. */
+    private static void tear(File log) {
+        try (FileOutputStream out = new FileOutputStream(log, true)) {
+            out.write(Utils.hexToBytes(Utils.sha1("torn")));
+            out.write(new byte[] {40, 't', 'o'});
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Abbreviated ids resolve to their one commit, ambiguous ones are
+     *  refused, and each commit's shortest abbreviation is unique. */
+    @Test
+    public void abbreviatedIds() {
+        File root = tempDir();
+        Repository repo = new Repository(root, System.out, System.err);
+        repo.init();
+        List<String> ids = new ArrayList<>();
+        for (int c = 0; c < 20; c += 1) {
+            Utils.writeContents(new File(root, "f.txt"), "rev " + c);
+            repo.add("f.txt");
+            ids.add(repo.commit("rev " + c));
+        }
+        for (String id : ids) {
+            String abbrev = repo.abbreviate(id);
+            assertTrue(abbrev.length() >= Repository.ABBREV);
+            assertEquals(id, repo.resolve(abbrev.toUpperCase()));
+            for (String other : ids) {
+                assertTrue(other.equals(id) || !other.startsWith(abbrev));
+            }
+        }
+        HashSet<Character> firsts = new HashSet<>();
+        String ambiguous = null;
+        for (String id : ids) {
+            if (!firsts.add(id.charAt(0))) {
+                ambiguous = id.substring(0, 1);
+            }
+        }
+        for (String bad : new String[] {ambiguous, "xyz", ""}) {
+            try {
+                repo.resolve(bad);
+                fail("resolved " + bad);
+            } catch (GitletException excp) {
+                assertTrue(excp.getMessage().startsWith(
+                    bad.equals(ambiguous) ? "More than one commit"
+                    : "No commit with that id exists."));
+            }
+        }
+        repo.reset(repo.abbreviate(ids.get(3)));
+        assertEquals(ids.get(3), repo.head());
+        assertEquals("rev 3",
+                     Utils.readContentsAsString(new File(root, "f.txt")));
+    }
+
+    /** Files in subfolders are committed as trees, which later commits
+     *  share where a folder did not change, and reset and checkout put
+     *  the folders back. */
+    @Test
+    public void treesShareFolders() {
+        File root = tempDir();
+        Repository repo = new Repository(root, System.out, System.err);
+        repo.init();
+        for (String name : new String[] {"top.txt", "src/a.txt",
+                                         "src/lib/b.txt", "doc/c.txt"}) {
+            File file = Utils.join(root, name);
+            file.getParentFile().mkdirs();
+            Utils.writeContents(file, name);
+            repo.add(name);
+        }
+        String first = repo.commit("tree");
+        Utils.writeContents(Utils.join(root, "src/a.txt"), "changed");
+        repo.add("src/a.txt");
+        repo.rm("doc/c.txt");
+        String second = repo.commit("change src");
+        assertFalse(Utils.join(root, "doc").exists());
+
+        File meta = Utils.join(root, ".gitlet");
+        ObjectStore commits = new ObjectStore(
+            Utils.join(meta, "commit_folder"),
+            Utils.join(meta, "pack_folder", "commits"));
+        ObjectStore trees = new ObjectStore(
+            Utils.join(meta, "tree_folder"),
+            Utils.join(meta, "pack_folder", "trees"));
+        Commit before = Commit.fromFile(commits, trees, first);
+        Commit after = Commit.fromFile(commits, trees, second);
+        assertEquals(Arrays.asList("doc/c.txt", "src/a.txt"),
+                     new ArrayList<>(Commit.diff(before, after).keySet()));
+        Set<String> shared = new HashSet<>();
+        before.tree().ids(shared);
+        assertEquals(4, shared.size());
+        Set<String> later = new HashSet<>();
+        after.tree().ids(later);
+        assertEquals(3, later.size());
+        shared.retainAll(later);
+        assertEquals(1, shared.size());
+        assertEquals(1 + 4 + 2, trees.list().size());
+        assertEquals(before.blob("src/lib/b.txt"),
+                     after.blob("src/lib/b.txt"));
+        assertNull(after.blob("doc/c.txt"));
+
+        repo.reset(first);
+        assertEquals("doc/c.txt", Utils.readContentsAsString(
+                         Utils.join(root, "doc/c.txt")));
+        assertEquals("src/a.txt", Utils.readContentsAsString(
+                         Utils.join(root, "src/a.txt")));
+        repo.checkoutFile(second, "src/a.txt");
+        assertEquals("changed", Utils.readContentsAsString(
+                         Utils.join(root, "src/a.txt")));
+        try {
+            repo.add("../escape");
+            fail("added a file outside the repository");
+        } catch (GitletException excp) {
+            assertEquals("File does not exist.", excp.getMessage());
+        }
+    }
+
+    /** global-log pages through every commit in id order, giving each
+     *  its stored id and message. */
+    @Test
+    public void globalLogPages() {
+        File root = tempDir();
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        Repository repo = new Repository(root, new PrintStream(printed,
+                                                               true),
+                                         System.err);
+        repo.init();
+        TreeSet<String> ids = new TreeSet<>();
+        ids.add(repo.head());
+        for (int c = 0; c < 6; c += 1) {
+            Utils.writeContents(new File(root, "f" + c), "rev " + c);
+            repo.add("f" + c);
+            ids.add(repo.commit("message " + c));
+        }
+        printed.reset();
+        repo.globalLog();
+        String[] all = printed.toString().split("\n\n");
+        assertEquals(ids.size(), all.length);
+        int i = 0;
+        for (String id : ids) {
+            assertTrue(all[i].startsWith("===\ncommit " + id + "\n"));
+            i += 1;
+        }
+        printed.reset();
+        repo.globalLog(2, 3);
+        assertEquals(String.join("\n\n", Arrays.copyOfRange(all, 2, 5))
+                     + "\n", printed.toString());
+        printed.reset();
+        repo.globalLog(ids.size(), 5);
+        assertEquals("", printed.toString());
+    }
+
+    /** log follows merged-in history only when asked, never shows a
+     *  commit before its children, and stops at its limits. */
+    @Test
+    public void logWalksMerges() {
+        File root = tempDir();
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        Repository repo = new Repository(root, new PrintStream(printed,
+                                                               true),
+                                         System.err);
+        repo.init();
+        Utils.writeContents(new File(root, "a"), "a");
+        Utils.writeContents(new File(root, "b"), "b");
+        repo.add("a");
+        repo.add("b");
+        repo.commit("base");
+        repo.branch("side");
+        for (int c = 0; c < 3; c += 1) {
+            Utils.writeContents(new File(root, "a"), "a" + c);
+            repo.add("a");
+            repo.commit("main " + c);
+        }
+        repo.checkout("side");
+        Utils.writeContents(new File(root, "b"), "b2");
+        repo.add("b");
+        repo.commit("side 0");
+        repo.checkout("master");
+        repo.merge("side");
+        printed.reset();
+        repo.log();
+        List<String> first = messages(printed.toString());
+        assertEquals(Arrays.asList("Merged side into master.", "main 2",
+                                   "main 1", "main 0", "base",
+                                   "initial commit"), first);
+        printed.reset();
+        repo.log("--all-parents");
+        List<String> all = messages(printed.toString());
+        assertEquals(7, all.size());
+        assertTrue(all.indexOf("side 0") < all.indexOf("base"));
+        assertEquals("initial commit", all.get(6));
+        printed.reset();
+        repo.log("--all-parents", "-n", "2");
+        assertEquals(all.subList(0, 2), messages(printed.toString()));
+        printed.reset();
+        repo.log("--since", "2999-01-01");
+        assertEquals("", printed.toString());
+        repo.log("--until", "1970-01-02");
+        assertEquals(Arrays.asList("initial commit"),
+                     messages(printed.toString()));
+    }
+
+    /** Return the commit messages in the log output PRINTED. */
+    private static List<String> messages(String printed) {
+        List<String> result = new ArrayList<>();
+        for (String entry : printed.split("\n\n")) {
+            String[] lines = entry.split("\n");
+            result.add(lines[lines.length - 1]);
+        }
+        return result;
+    }
+
+    /** Separate repositories can be driven from one process, on many
+     *  threads at once, each printing to its own stream. */
+    @Test
+    public void repositoriesInParallel() throws InterruptedException {
+        final int count = 8;
+        Repository[] repos = new Repository[count];
+        ByteArrayOutputStream[] outs = new ByteArrayOutputStream[count];
+        Thread[] threads = new Thread[count];
+        String[] heads = new String[count];
+        for (int i = 0; i < count; i += 1) {
+            final int k = i;
+            File root = tempDir();
+            outs[k] = new ByteArrayOutputStream();
+            repos[k] = new Repository(root, new PrintStream(outs[k], true),
+                                      System.err);
+            threads[k] = new Thread(() -> {
+                repos[k].init();
+                for (int c = 0; c < 3; c += 1) {
+                    Utils.writeContents(new File(root, "f.txt"),
+                                        "repo " + k + " rev " + c);
+                    repos[k].add("f.txt");
+                    heads[k] = repos[k].commit("rev " + c);
+                }
+                repos[k].status();
+            });
+            threads[k].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (int k = 0; k < count; k += 1) {
+            assertEquals(heads[k], repos[k].head());
+            String printed = outs[k].toString();
+            assertTrue(printed.startsWith("=== Branches ===\n*master\n"));
+            outs[k].reset();
+            repos[k].log();
+            assertEquals(4, outs[k].toString().split("===").length - 1);
+            try {
+                repos[k].commit("nothing");
+                fail("empty commit accepted");
+            } catch (GitletException excp) {
+                assertEquals("No changes added to the commit.",
+                             excp.getMessage());
+            }
+        }
+    }
+
+    /** Commands run on one repository through separate Repository
+     *  objects, as separate processes would, take turns where they
+     *  write: none of many branches made at once is lost, and the
+     *  commands that read alongside them all succeed. */
+    @Test
+    public void lockSerializesWriters() throws InterruptedException {
+        final int count = 200;
+        File root = tempDir();
+        new Repository(root, System.out, System.err).init();
+        List<Throwable> failures =
+            Collections.synchronizedList(new ArrayList<>());
+        Thread[] threads = new Thread[count];
+        for (int k = 0; k < count; k += 1) {
+            final int n = k;
+            threads[k] = new Thread(() -> {
+                Repository repo = new Repository(
+                    root, new PrintStream(new ByteArrayOutputStream()),
+                    System.err);
+                try {
+                    switch (n % 5) {
+                    case 0:
+                        repo.status();
+                        break;
+                    case 1:
+                        repo.log();
+                        break;
+                    default:
+                        repo.branch("b" + n);
+                    }
+                } catch (RuntimeException excp) {
+                    failures.add(excp);
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(Arrays.asList(), failures);
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        new Repository(root, new PrintStream(printed, true), System.err)
+            .status();
+        Set<String> branches = new HashSet<>(Arrays.asList(
+            printed.toString().split("\n\n")[0].split("\n")));
+        for (int k = 0; k < count; k += 1) {
+            assertEquals(k % 5 > 1, branches.contains("b" + k));
+        }
+    }
+
+    /** Of many inits at once in one directory, one makes the repository
+     *  and the rest fail without touching it. */
+    @Test
+    public void concurrentInits() throws InterruptedException {
+        File root = tempDir();
+        final int count = 8;
+        List<Throwable> failures =
+            Collections.synchronizedList(new ArrayList<>());
+        Thread[] threads = new Thread[count];
+        for (int k = 0; k < count; k += 1) {
+            threads[k] = new Thread(() -> {
+                try {
+                    new Repository(root, System.out, System.err).init();
+                } catch (RuntimeException excp) {
+                    failures.add(excp);
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(count - 1, failures.size());
+        for (Throwable excp : failures) {
+            assertTrue(excp instanceof GitletException);
+        }
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        new Repository(root, new PrintStream(printed, true), System.err)
+            .status();
+        assertTrue(printed.toString().startsWith("=== Branches ===\n*master"));
+    }
+
+    /** Readers in one process share the lock without locking the file
+     *  again, and a writer waits until the last of them is done. */
+    @Test
+    public void lockSharedInProcess() {
+        File file = new File(tempDir(), "lock");
+        RepoLock lock = new RepoLock(file);
+        RepoLock.Held first = lock.acquire(true, 0);
+        RepoLock.Held second = new RepoLock(file).acquire(true, 0);
+        assertNull(lock.tryAcquire(false));
+        first.close();
+        first.close();
+        assertNull(lock.tryAcquire(false));
+        second.close();
+        RepoLock.Held writer = lock.tryAcquire(false);
+        assertNotNull(writer);
+        assertNull(lock.tryAcquire(true));
+        writer.close();
+    }
+
+    /** Diff finds a shortest edit script, as long as one found by
+     *  dynamic programming, that turns each text into the other, prints
+     *  it in unified format, and checks that the lines it keeps are
+     *  equal, as hashes may collide. */
+    @Test
+    public void diffFindsShortestEdits() {
+        Random random = new Random(7);
+        for (int round = 0; round < 300; round += 1) {
+            String[] a = randomLines(random), b = randomLines(random);
+            Diff.Table table = new Diff.Table();
+            List<int[]> edits = Diff.edits(lines(a, table),
+                                           lines(b, table));
+            List<String> patched = new ArrayList<>();
+            int next = 0, changed = 0;
+            for (int[] edit : edits) {
+                assertTrue(edit[0] >= next);
+                patched.addAll(Arrays.asList(a).subList(next, edit[0]));
+                patched.addAll(Arrays.asList(b).subList(edit[2], edit[3]));
+                changed += edit[1] - edit[0] + edit[3] - edit[2];
+                next = edit[1];
+            }
+            patched.addAll(Arrays.asList(a).subList(next, a.length));
+            assertEquals(Arrays.asList(b), patched);
+            int[][] common = new int[a.length + 1][b.length + 1];
+            for (int i = a.length - 1; i >= 0; i -= 1) {
+                for (int j = b.length - 1; j >= 0; j -= 1) {
+                    common[i][j] = a[i].equals(b[j]) ? common[i + 1][j + 1] + 1
+                        : Math.max(common[i + 1][j], common[i][j + 1]);
+                }
+            }
+            assertEquals(a.length + b.length - 2 * common[0][0], changed);
+        }
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        Diff.print("f.txt", () -> text("a\nb\nc\nd\ne\nf\ng\nh\ni\n"),
+                   () -> text("a\nb\nc\nD\ne\nf\ng\nh\ni"),
+                   new PrintStream(printed, true));
+        assertEquals("--- a/f.txt\n+++ b/f.txt\n@@ -1,9 +1,9 @@\n a\n b\n"
+                     + " c\n-d\n+D\n e\n f\n g\n h\n-i\n+i\n"
+                     + "\\ No newline at end of file\n",
+                     printed.toString().replace(System.lineSeparator(), "\n"));
+        Diff.Table table = new Diff.Table();
+        for (int i = 0; i < 1000; i += 1) {
+            assertEquals(i, table.intern(i * 0x100000000L));
+        }
+        assertEquals(7, table.intern(7L << 32));
+        assertEquals(1000, table.size());
+        List<int[]> kept = new ArrayList<>();
+        assertTrue(Diff.verify(kept, () -> text("a\nb"), () -> text("a\nb")));
+        assertFalse(Diff.verify(kept, () -> text("a\nb\n"),
+                                () -> text("a\nb")));
+        assertFalse(Diff.verify(kept, () -> text("a\nb\n"),
+                                () -> text("a\nc\n")));
+        assertFalse(Diff.verify(kept, () -> text("a\n"),
+                                () -> text("a\nb\n")));
+        kept.add(new int[] {1, 2, 1, 3});
+        assertTrue(Diff.verify(kept, () -> text("a\nb\nc\n"),
+                               () -> text("a\nx\ny\nc\n")));
+        assertFalse(Diff.verify(kept, () -> text("a\nb\nc\n"),
+                                () -> text("a\nx\ny\nd\n")));
+    }
+
+    /** Return up to 20 lines drawn at random from a few, by RANDOM. */
+    private static String[] randomLines(Random random) {
+        String[] result = new String[random.nextInt(20)];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = "line " + random.nextInt(4);
+        }
+        return result;
+    }
+
+    /** Return LINES, each ended by a newline, numbered in TABLE. */
+    private static Diff.Lines lines(String[] lines, Diff.Table table) {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            text.append(line).append('\n');
+        }
+        return Diff.read(text(text.toString()), table);
+    }
+
+    /** Return a stream of TEXT. */
+    private static InputStream text(String text) {
+        return new ByteArrayInputStream(
+            text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,6 +1,7 @@
 package gitlet;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -8,12 +9,15 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Formatter;
 import java.util.List;
@@ -54,12 +58,71 @@ class Utils {
         }
     }
 
+    /** Returns a new SHA-1 digest. */
+    static MessageDigest sha1Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /** Returns the SHA-1 hash of PREFIX followed by the contents of FILE,
+     *  which is read as a stream, so that sha1File(p, f) equals
+     *  sha1(p, readContents(f)) for files of any size. */
+    static String sha1File(String prefix, File file) {
+        MessageDigest md = sha1Digest();
+        md.update(prefix.getBytes(StandardCharsets.UTF_8));
+        try (DigestInputStream in = new DigestInputStream(
+                 Files.newInputStream(file.toPath()), md)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytesToHex(md.digest());
+    }
+
     /** Returns the SHA-1 hash of the concatenation of the strings in
      *  VALS. */
     static String sha1(List<Object> vals) {
         return sha1(vals.toArray(new Object[vals.size()]));
     }
 
+    /** The length of a complete SHA-1 UID in bytes. */
+    static final int UID_BYTES = UID_LENGTH / 2;
+
+    /** Returns the UID_BYTES raw bytes of the hexadecimal UID ID. */
+    static byte[] hexToBytes(String id) {
+        if (id.length() != UID_LENGTH) {
+            throw new IllegalArgumentException("not a full id: " + id);
+        }
+        byte[] result = new byte[UID_BYTES];
+        for (int i = 0; i < UID_BYTES; i += 1) {
+            result[i] = (byte) ((Character.digit(id.charAt(2 * i), 16) << 4)
+                                | Character.digit(id.charAt(2 * i + 1), 16));
+        }
+        return result;
+    }
+
+    /** Hexadecimal digits, in order. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Returns the hexadecimal numeral for the raw UID bytes RAW. */
+    static String bytesToHex(byte[] raw) {
+        return bytesToHex(raw, 0, raw.length);
+    }
+
+    /** Returns the hexadecimal numeral for the LENGTH bytes of RAW from
+     *  START on. */
+    static String bytesToHex(byte[] raw, int start, int length) {
+        char[] result = new char[2 * length];
+        for (int i = 0; i < length; i += 1) {
+            result[2 * i] = HEX[(raw[start + i] >> 4) & 0xf];
+            result[2 * i + 1] = HEX[raw[start + i] & 0xf];
+        }
+        return new String(result);
+    }
+
     /* FILE DELETION */
 
     /** Deletes FILE if it exists and is not a directory.  Returns true
@@ -149,6 +212,23 @@ class Utils {
         }
     }
 
+    /** Return an object of type T decoded from the serialized bytes DATA,
+     *  casting it to EXPECTEDCLASS.  Throws IllegalArgumentException in
+     *  case of problems. */
+    static <T extends Serializable> T deserialize(byte[] data,
+                                                  Class<T> expectedClass) {
+        try {
+            ObjectInputStream in =
+                new ObjectInputStream(new ByteArrayInputStream(data));
+            T result = expectedClass.cast(in.readObject());
+            in.close();
+            return result;
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
     /** Write OBJ to FILE. */
     static void writeObject(File file, Serializable obj) {
         writeContents(file, serialize(obj));
@@ -185,8 +265,69 @@ class Utils {
         return plainFilenamesIn(new File(dir));
     }
 
+    /** Returns a list of the paths relative to DIR, with folders separated
+     *  by '/', of all plain files in DIR and its subdirectories, except
+     *  the subdirectory of DIR named SKIP, in lexicographic order as Java
+     *  Strings.  Returns null if DIR does not denote a directory. */
+    static List<String> plainFilesUnder(File dir, String skip) {
+        if (!dir.isDirectory()) {
+            return null;
+        }
+        List<String> result = new ArrayList<>();
+        addFilesUnder(dir, "", skip, result);
+        result.sort(null);
+        return result;
+    }
+
+    /** Add the paths of the plain files under DIR, which is PREFIX
+     *  relative to the folder being listed, to RESULT, skipping any
+     *  subdirectory named SKIP. */
+    private static void addFilesUnder(File dir, String prefix, String skip,
+                                      List<String> result) {
+        String[] names = dir.list();
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            File file = new File(dir, name);
+            if (file.isFile()) {
+                result.add(prefix + name);
+            } else if (file.isDirectory() && !name.equals(skip)) {
+                addFilesUnder(file, prefix + name + "/", null, result);
+            }
+        }
+    }
+
+    /** Delete the file NAME under DIR, a path as plainFilesUnder returns,
+     *  and then each folder on its way that that leaves empty.  Returns
+     *  true iff the file was deleted. */
+    static boolean deleteUnder(File dir, String name) {
+        File file = join(dir, name);
+        if (!file.delete()) {
+            return false;
+        }
+        File parent = file.getParentFile();
+        while (parent != null && !parent.equals(dir) && parent.delete()) {
+            parent = parent.getParentFile();
+        }
+        return true;
+    }
+
     /* OTHER FILE UTILITIES */
 
+    /** Return a new empty file beside FILE, to be written and then renamed
+     *  over it.  Its name is unique, so that processes replacing FILE at
+     *  the same time each write their own. */
+    static File tempFile(File file) {
+        try {
+            return File.createTempFile(file.getName() + ".", ".tmp",
+                                       file.getAbsoluteFile()
+                                       .getParentFile());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
     /** Return the concatentation of FIRST and OTHERS into a File designator,
      *  analogous to the method. */
     static File join(String first, String... others) {